@@ -0,0 +1,100 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.cli;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.github.email4n6.model.parser.ParserTask;
+import com.github.email4n6.model.parser.ProgressReporter;
+import com.github.email4n6.view.tabs.tree.TreeObject;
+
+import javafx.scene.control.TreeItem;
+import lombok.Getter;
+
+/**
+ * Progress reporter which writes to a stream instead of showing a window,
+ * the progress of running tasks is written at a fixed interval.
+ *
+ * @author Marten4n6
+ */
+abstract class CommandLineReporter implements ProgressReporter {
+
+    protected final PrintStream out;
+
+    private final @Getter List<TreeItem<TreeObject>> createdTreeItems = Collections.synchronizedList(new ArrayList<>());
+    private final List<ParserTask<?>> runningTasks = new CopyOnWriteArrayList<>();
+    private final List<ParserTask<?>> tasks = new CopyOnWriteArrayList<>();
+
+    private final ExecutorService executorService = Executors.newCachedThreadPool(); // The FileParser limits how many files are parsed at once.
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * @param intervalMillis The interval at which progress is written.
+     */
+    CommandLineReporter(PrintStream out, long intervalMillis) {
+        this.out = out;
+
+        timer.scheduleAtFixedRate(() -> runningTasks.forEach(this::reportProgress), intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void setStatus(String message) {
+        reportStatus(message);
+    }
+
+    @Override
+    public void addTask(ParserTask<TreeItem<TreeObject>> task) {
+        task.setSucceededListener(createdTreeItems::add);
+        runningTasks.add(task);
+        tasks.add(task);
+
+        executorService.execute(() -> {
+            task.run();
+            runningTasks.remove(task);
+            reportFinished(task);
+        });
+    }
+
+    @Override
+    public void shutdown() {
+        timer.shutdownNow();
+        executorService.shutdown();
+    }
+
+    /**
+     * @return The amount of tasks which failed or couldn't index every item.
+     */
+    int getFailedTasks() {
+        // Known before the parser's finished listener is called, unlike the end of run().
+        return (int) tasks.stream().filter(task -> task.getException() != null || task.getFailures() > 0).count();
+    }
+
+    abstract void reportStatus(String message);
+
+    abstract void reportProgress(ParserTask<?> task);
+
+    abstract void reportFinished(ParserTask<?> task);
+}
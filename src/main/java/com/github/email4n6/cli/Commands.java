@@ -0,0 +1,317 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.cli;
+
+import static com.github.email4n6.cli.Email4n6CLI.EXIT_FAILURE;
+import static com.github.email4n6.cli.Email4n6CLI.EXIT_SUCCESS;
+import static com.github.email4n6.cli.Email4n6CLI.EXIT_USAGE;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.Query;
+
+import com.github.email4n6.model.Case;
+import com.github.email4n6.model.Settings;
+import com.github.email4n6.utils.PathUtils;
+import com.github.email4n6.view.tabs.home.HomeModel;
+import com.github.email4n6.view.tabs.search.SearchModel;
+import com.google.gson.Gson;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Handles the commands of the command line interface.
+ *
+ * @author Marten4n6
+ */
+@Slf4j
+class Commands {
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage:",
+            "  ingest <case> [--source <path>]... [--subfolders] [--investigator <name>] [--description <text>]",
+            "                [--progress console|json] [--interval <milliseconds>]",
+            "  search <case> <query> [--limit <amount, 0 for unlimited>] [--json]",
+            "",
+            "Exit codes: 0 on success, 1 on invalid usage, 2 if a command failed."
+    );
+
+    private final PrintStream out;
+    private final PrintStream err;
+
+    Commands(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * @return The exit code.
+     */
+    int run(String[] args) {
+        if (args.length == 0) {
+            return usage(null);
+        }
+
+        try {
+            Arguments arguments = new Arguments(args);
+
+            switch (args[0]) {
+                case "ingest":
+                    return ingest(arguments);
+                case "search":
+                    return search(arguments);
+                case "help":
+                case "--help":
+                    out.println(USAGE);
+                    return EXIT_SUCCESS;
+                default:
+                    return usage("Unknown command: " + args[0]);
+            }
+        } catch (IllegalArgumentException ex) {
+            return usage(ex.getMessage());
+        } catch (Exception ex) {
+            log.error(ex.getMessage(), ex);
+            err.println("Error: " + ex.getMessage());
+            return EXIT_FAILURE;
+        }
+    }
+
+    /**
+     * Creates the case if it doesn't exist and indexes it's sources.
+     */
+    private int ingest(Arguments arguments) throws InterruptedException {
+        String caseName = arguments.getPositional(0, "case");
+        HomeModel homeModel = new HomeModel();
+        Case caseObject;
+
+        new File(PathUtils.getCasesPath()).mkdir();
+        new File(PathUtils.getTempPath()).mkdir();
+
+        if (homeModel.isExistingCase(caseName)) {
+            if (!arguments.getValues("--source").isEmpty()) {
+                throw new IllegalArgumentException("The sources of an existing case can't be changed.");
+            }
+            caseObject = homeModel.getCaseObject(caseName);
+
+            if (caseObject == null) {
+                err.println("Failed to read the case \"" + caseName + "\".");
+                return EXIT_FAILURE;
+            }
+        } else {
+            Set<String> sources = new LinkedHashSet<>();
+
+            for (String source : arguments.getValues("--source")) {
+                File sourceFile = new File(source);
+
+                if (!sourceFile.exists()) {
+                    throw new IllegalArgumentException("The source doesn't exist: " + source);
+                }
+                sources.add(sourceFile.getAbsolutePath());
+            }
+
+            if (sources.isEmpty()) {
+                throw new IllegalArgumentException("A new case needs at least one --source.");
+            }
+
+            caseObject = Case.builder()
+                    .id(PathUtils.getNumberOfCases() + 1)
+                    .name(caseName)
+                    .investigator(arguments.getValue("--investigator", System.getProperty("user.name")))
+                    .description(arguments.getValue("--description", ""))
+                    .size("Not calculated yet.")
+                    .sources(sources)
+                    .subFolders(arguments.hasFlag("--subfolders")).build();
+        }
+
+        long interval = Long.parseLong(arguments.getValue("--interval", "1000"));
+        CommandLineReporter reporter;
+
+        switch (arguments.getValue("--progress", "console")) {
+            case "console":
+                reporter = new ConsoleProgressReporter(out, interval);
+                break;
+            case "json":
+                reporter = new JsonProgressReporter(out, interval);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown progress format: " + arguments.getValue("--progress", ""));
+        }
+
+        CountDownLatch finishedLatch = new CountDownLatch(1);
+
+        homeModel.setOnFinishedParsing((currentCase, indexer, progressReporter) -> {
+            progressReporter.setStatus("Closing the indexer...");
+            indexer.close();
+
+            progressReporter.shutdown();
+            finishedLatch.countDown();
+        });
+        homeModel.openCase(caseObject, reporter);
+
+        finishedLatch.await();
+        homeModel.getDatabase().close();
+
+        if (reporter.getFailedTasks() > 0) {
+            err.println(reporter.getFailedTasks() + " source(s) failed to parse completely, see the log.");
+            return EXIT_FAILURE;
+        }
+        reporter.setStatus("Finished.");
+        return EXIT_SUCCESS;
+    }
+
+    /**
+     * Searches the index of a case and writes the stored fields of each hit.
+     *
+     * @throws IOException If the index couldn't be read, so a broken index isn't reported as no results.
+     */
+    private int search(Arguments arguments) throws IOException {
+        String caseName = arguments.getPositional(0, "case");
+        String queryString = arguments.getPositional(1, "query");
+
+        if (!new HomeModel().isExistingCase(caseName)) {
+            err.println("The case \"" + caseName + "\" doesn't exist.");
+            return EXIT_FAILURE;
+        }
+
+        int limit = parseLimit(arguments.getValue("--limit", "" + Settings.getInt(caseName, "search_limit", 100)));
+        SearchModel searchModel = new SearchModel(caseName);
+        Query query;
+
+        try {
+            query = searchModel.parseQuery(queryString);
+        } catch (ParseException ex) {
+            err.println("Invalid query: " + ex.getMessage());
+            return EXIT_USAGE;
+        }
+
+        List<Document> documents = searchModel.searchDocuments(query, limit);
+        Gson gson = new Gson();
+
+        for (Document document : documents) {
+            Map<String, String> fields = new LinkedHashMap<>();
+
+            for (IndexableField field : document.getFields()) {
+                fields.put(field.name(), field.stringValue());
+            }
+
+            if (arguments.hasFlag("--json")) {
+                out.println(gson.toJson(fields));
+            } else {
+                fields.forEach((name, value) -> out.println(name + ": " + value));
+                out.println();
+            }
+        }
+
+        if (!arguments.hasFlag("--json")) {
+            out.println(documents.size() + " result(s).");
+        }
+        return EXIT_SUCCESS;
+    }
+
+    /**
+     * @return The search limit, where 0 (like in the search tab) means unlimited.
+     */
+    private int parseLimit(String value) {
+        int limit;
+
+        try {
+            limit = Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            limit = -1;
+        }
+
+        if (limit < 0) {
+            throw new IllegalArgumentException("The search limit must be 0 (unlimited) or more: " + value);
+        }
+        return limit == 0 ? Integer.MAX_VALUE : limit;
+    }
+
+    private int usage(String error) {
+        if (error != null) {
+            err.println(error);
+        }
+        err.println(USAGE);
+        return EXIT_USAGE;
+    }
+
+    /**
+     * Splits the arguments (after the command) into positional arguments, options and flags.
+     */
+    private static class Arguments {
+
+        private static final Set<String> FLAGS = new LinkedHashSet<>();
+
+        static {
+            FLAGS.add("--subfolders");
+            FLAGS.add("--json");
+        }
+
+        private final List<String> positional = new ArrayList<>();
+        private final Map<String, List<String>> options = new LinkedHashMap<>();
+
+        Arguments(String[] args) {
+            for (int i = 1; i < args.length; i++) {
+                String argument = args[i];
+
+                if (FLAGS.contains(argument)) {
+                    options.computeIfAbsent(argument, key -> new ArrayList<>());
+                } else if (argument.startsWith("--")) {
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("Missing value for " + argument);
+                    }
+                    options.computeIfAbsent(argument, key -> new ArrayList<>()).add(args[++i]);
+                } else {
+                    positional.add(argument);
+                }
+            }
+        }
+
+        String getPositional(int index, String name) {
+            if (index >= positional.size()) {
+                throw new IllegalArgumentException("Missing argument: <" + name + ">");
+            }
+            return positional.get(index);
+        }
+
+        List<String> getValues(String option) {
+            return options.getOrDefault(option, new ArrayList<>(0));
+        }
+
+        String getValue(String option, String defaultValue) {
+            List<String> values = getValues(option);
+
+            return values.isEmpty() ? defaultValue : values.get(values.size() - 1);
+        }
+
+        boolean hasFlag(String flag) {
+            return options.containsKey(flag);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.cli;
+
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import com.github.email4n6.model.parser.ParserTask;
+
+/**
+ * Writes progress as human readable lines.
+ *
+ * @author Marten4n6
+ */
+class ConsoleProgressReporter extends CommandLineReporter {
+
+    ConsoleProgressReporter(PrintStream out, long intervalMillis) {
+        super(out, intervalMillis);
+    }
+
+    @Override
+    void reportStatus(String message) {
+        print("Status: " + message);
+    }
+
+    @Override
+    void reportProgress(ParserTask<?> task) {
+        if (task.getProgress() < 0) {
+            print(String.format("%s - %s", task.getTitle(), task.getMessage()));
+        } else {
+            print(String.format("%s - %s - %.1f%% (%d/%d)",
+                    task.getTitle(), task.getMessage(), task.getProgress() * 100, task.getWorkDone(), task.getTotalWork()));
+        }
+
+        if (!task.getStages().isEmpty()) {
+            print(String.format("%s - Pipeline: %s", task.getTitle(), task.getPipelineStatus()));
+        }
+    }
+
+    @Override
+    void reportFinished(ParserTask<?> task) {
+        if (task.getException() != null) {
+            print(String.format("%s - Failed: %s", task.getTitle(), task.getException().getMessage()));
+        } else if (task.getFailures() > 0) {
+            print(String.format("%s - Finished with %d failure(s), the source is indexed again next time.", task.getTitle(), task.getFailures()));
+        } else {
+            print(String.format("%s - Finished.", task.getTitle()));
+        }
+    }
+
+    private void print(String line) {
+        out.println("[" + new SimpleDateFormat("HH:mm:ss").format(new Date()) + "] " + line);
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.cli;
+
+/**
+ * Starting class when running without a GUI, for example on a server or in a script.
+ *
+ * @author Marten4n6
+ */
+public class Email4n6CLI {
+
+    static final int EXIT_SUCCESS = 0;
+    static final int EXIT_USAGE = 1;
+    static final int EXIT_FAILURE = 2;
+
+    public static void main(String[] args) {
+        // Log to stderr so only results are written to stdout,
+        // this must be set before any logger is created.
+        System.setProperty("logback.configurationFile", "logback-cli.xml");
+
+        System.exit(new Commands(System.out, System.err).run(args));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.cli;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.email4n6.model.parser.ParserTask;
+import com.github.email4n6.model.parser.PipelineStage;
+import com.google.gson.Gson;
+
+/**
+ * Writes progress as one JSON object per line, for other programs to read.
+ *
+ * @author Marten4n6
+ */
+class JsonProgressReporter extends CommandLineReporter {
+
+    private final Gson gson = new Gson();
+
+    JsonProgressReporter(PrintStream out, long intervalMillis) {
+        super(out, intervalMillis);
+    }
+
+    @Override
+    void reportStatus(String message) {
+        Map<String, Object> event = createEvent("status");
+        event.put("message", message);
+
+        print(event);
+    }
+
+    @Override
+    void reportProgress(ParserTask<?> task) {
+        Map<String, Object> event = createEvent("progress");
+        event.put("title", task.getTitle());
+        event.put("message", task.getMessage());
+        event.put("work_done", task.getWorkDone());
+        event.put("total_work", task.getTotalWork());
+        event.put("progress", task.getProgress());
+
+        if (!task.getStages().isEmpty()) {
+            List<Map<String, Object>> stages = new ArrayList<>();
+
+            for (PipelineStage<?, ?> stage : task.getStages()) {
+                Map<String, Object> stageEvent = new LinkedHashMap<>();
+                stageEvent.put("name", stage.getName());
+                stageEvent.put("queue_depth", stage.getQueueDepth());
+                stageEvent.put("processed", stage.getProcessedAmount());
+                stageEvent.put("throughput", stage.getThroughput());
+
+                stages.add(stageEvent);
+            }
+            event.put("stages", stages);
+        }
+
+        print(event);
+    }
+
+    @Override
+    void reportFinished(ParserTask<?> task) {
+        Map<String, Object> event = createEvent("finished");
+        event.put("title", task.getTitle());
+        event.put("succeeded", task.getException() == null && task.getFailures() == 0);
+        event.put("failures", task.getFailures());
+
+        if (task.getException() != null) {
+            event.put("error", String.valueOf(task.getException().getMessage()));
+        }
+        print(event);
+    }
+
+    private Map<String, Object> createEvent(String type) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("type", type);
+        event.put("time", System.currentTimeMillis());
+
+        return event;
+    }
+
+    private void print(Map<String, Object> event) {
+        synchronized (out) {
+            out.println(gson.toJson(event));
+        }
+    }
+}
@@ -0,0 +1,396 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.email4n6.utils.PathUtils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Groups messages into conversations, by the Message-IDs they reply to (In-Reply-To and References).
+ * Built while indexing: every message joins the conversations of the messages it refers to,
+ * even if those are indexed later or in another source.
+ * <p>
+ * Message-IDs are stored as a 64-bit hash, each conversation is a disjoint set (union-find)
+ * whose members are linked in a circle, so all members are listed without searching.
+ * Documents are given the hash of their own Message-ID as "conversation_key", which makes
+ * a whole conversation a single terms query.
+ * <p>
+ * Sets can't be split again, so the references of every source are kept as well. When a source
+ * is deleted (or indexed again) the sets are rebuilt from the references of the remaining sources.
+ * Saved to the case's folder with every checkpoint, the sets are rebuilt when it's loaded.
+ *
+ * @author Marten4n6
+ */
+@Slf4j
+public class ConversationIndex {
+
+    private static final Map<String, ConversationIndex> indexes = new HashMap<>();
+
+    private static final int FILE_VERSION = 2;
+
+    private final File file;
+
+    /**
+     * Per node: the hashed Message-ID, the parent node (itself if it's the root of the set)
+     * and the next member of the set.
+     */
+    private long[] keys = new long[1024];
+    private int[] parents = new int[1024];
+    private int[] next = new int[1024];
+    private int size;
+
+    /**
+     * Open addressing table of node + 1 per hashed Message-ID, 0 if the slot is empty.
+     */
+    private int[] table = new int[2048];
+
+    /**
+     * Per source ID: the messages as their key, the amount of referenced keys and the referenced keys.
+     */
+    private final Map<String, References> sources = new HashMap<>();
+
+    private boolean changed;
+
+    private ConversationIndex(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return The conversation index of the case, loaded from disk the first time.
+     */
+    public static synchronized ConversationIndex get(String caseName) {
+        return indexes.computeIfAbsent(caseName, name -> {
+            ConversationIndex conversationIndex = new ConversationIndex(PathUtils.getConversationFile(name));
+
+            conversationIndex.load();
+            return conversationIndex;
+        });
+    }
+
+    /**
+     * Saves and forgets the conversation index of the case, if it's loaded.
+     */
+    public static synchronized void close(String caseName) {
+        ConversationIndex conversationIndex = indexes.remove(caseName);
+
+        if (conversationIndex != null) {
+            conversationIndex.save();
+        }
+    }
+
+    /**
+     * @return The key of the Message-ID, the same for every notation (case, angle brackets) of it.
+     */
+    public static long getKey(String messageID) {
+        try {
+            String normalized = messageID.trim().toLowerCase().replaceAll("^<|>$", "");
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(normalized.getBytes(StandardCharsets.UTF_8));
+            long key = 0;
+
+            for (int i = 0; i < 8; i++) {
+                key = (key << 8) | (hash[i] & 0xFF);
+            }
+            return key;
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * @return The key as it's indexed in the "conversation_key" field.
+     */
+    public static String toTerm(long key) {
+        return String.format("%016x", key);
+    }
+
+    /**
+     * Adds the message to the conversation of the messages it refers to,
+     * conversations which turn out to be the same are merged.
+     *
+     * @param sourceID   The ID of the source the message belongs to.
+     * @param key        The key of the message's Message-ID.
+     * @param referenced The keys of the Message-IDs it replies to.
+     */
+    public synchronized void add(String sourceID, long key, Collection<Long> referenced) {
+        References references = sources.computeIfAbsent(sourceID, id -> new References());
+
+        references.add(key);
+        references.add(referenced.size());
+        referenced.forEach(references::add);
+        changed = true;
+
+        add(key, referenced);
+    }
+
+    /**
+     * Removes the messages of the source, conversations are rebuilt from the other sources.
+     */
+    public synchronized void removeSource(String sourceID) {
+        if (sources.remove(sourceID) != null) {
+            log.debug("Removing source {} from the conversation index...", sourceID);
+            rebuild();
+        }
+    }
+
+    /**
+     * Removes the messages of every source.
+     */
+    public synchronized void clear() {
+        if (!sources.isEmpty()) {
+            sources.clear();
+            rebuild();
+        }
+    }
+
+    /**
+     * @return The keys of every message in the conversation of the key (including messages
+     * which are referred to but not indexed), only the key itself if it isn't known.
+     */
+    public synchronized List<Long> getConversation(long key) {
+        int node = getNode(key);
+
+        if (node == -1) {
+            return Collections.singletonList(key);
+        }
+
+        List<Long> members = new ArrayList<>();
+        int member = node;
+
+        do {
+            members.add(keys[member]);
+            member = next[member];
+        } while (member != node);
+
+        return members;
+    }
+
+    /**
+     * Writes the conversation index to disk, if it changed since it was last saved.
+     */
+    public synchronized void save() {
+        if (!changed) {
+            return;
+        }
+
+        File tempFile = new File(file.getPath() + ".tmp");
+
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile.toPath())))) {
+            outputStream.writeInt(FILE_VERSION);
+            outputStream.writeInt(sources.size());
+
+            for (Map.Entry<String, References> source : sources.entrySet()) {
+                outputStream.writeUTF(source.getKey());
+                outputStream.writeInt(source.getValue().size);
+
+                for (int i = 0; i < source.getValue().size; i++) {
+                    outputStream.writeLong(source.getValue().values[i]);
+                }
+            }
+        } catch (IOException ex) {
+            log.error("Failed to save the conversation index: {}", ex.getMessage(), ex);
+            return;
+        }
+
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            changed = false;
+        } catch (IOException ex) {
+            log.error("Failed to save the conversation index: {}", ex.getMessage(), ex);
+        }
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (inputStream.readInt() != FILE_VERSION) {
+                log.warn("Ignoring conversation index of an unknown version: {}", file.getPath());
+                return;
+            }
+
+            int sourceAmount = inputStream.readInt();
+
+            for (int source = 0; source < sourceAmount; source++) {
+                References references = new References();
+                String sourceID = inputStream.readUTF();
+                int amount = inputStream.readInt();
+
+                for (int i = 0; i < amount; i++) {
+                    references.add(inputStream.readLong());
+                }
+                sources.put(sourceID, references);
+            }
+            rebuild();
+            changed = false;
+
+            log.debug("Loaded the conversation index ({} Message-IDs).", size);
+        } catch (IOException ex) {
+            log.error("Failed to load the conversation index: {}", ex.getMessage(), ex);
+
+            // Start over rather than use a partially read index.
+            sources.clear();
+            rebuild();
+        }
+    }
+
+    private void add(long key, Collection<Long> referenced) {
+        int node = getOrAddNode(key);
+
+        for (long referencedKey : referenced) {
+            union(node, getOrAddNode(referencedKey));
+        }
+    }
+
+    /**
+     * Builds the conversations again from the references of every source.
+     */
+    private void rebuild() {
+        size = 0;
+        Arrays.fill(table, 0);
+
+        for (References references : sources.values()) {
+            int i = 0;
+
+            while (i < references.size) {
+                int node = getOrAddNode(references.values[i]);
+                int amount = (int) references.values[i + 1];
+
+                for (int end = i + 2 + amount, j = i + 2; j < end; j++) {
+                    union(node, getOrAddNode(references.values[j]));
+                }
+                i += 2 + amount;
+            }
+        }
+        changed = true;
+    }
+
+    private int getNode(long key) {
+        int slot = getSlot(key);
+
+        return table[slot] - 1;
+    }
+
+    private int getOrAddNode(long key) {
+        int slot = getSlot(key);
+
+        if (table[slot] != 0) {
+            return table[slot] - 1;
+        }
+
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            parents = Arrays.copyOf(parents, size * 2);
+            next = Arrays.copyOf(next, size * 2);
+        }
+
+        int node = size++;
+
+        keys[node] = key;
+        parents[node] = node;
+        next[node] = node;
+        table[slot] = node + 1;
+        changed = true;
+
+        if (size * 2 > table.length) {
+            rehash();
+        }
+        return node;
+    }
+
+    /**
+     * @return The slot of the key, or the empty slot where it belongs.
+     */
+    private int getSlot(long key) {
+        int mask = table.length - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+
+        while (table[slot] != 0 && keys[table[slot] - 1] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+
+        for (int node = 0; node < size; node++) {
+            table[getSlot(keys[node])] = node + 1;
+        }
+    }
+
+    private int find(int node) {
+        while (parents[node] != node) {
+            parents[node] = parents[parents[node]]; // Path halving
+            node = parents[node];
+        }
+        return node;
+    }
+
+    private void union(int node1, int node2) {
+        int root1 = find(node1);
+        int root2 = find(node2);
+
+        if (root1 != root2) {
+            parents[root2] = root1;
+
+            // Joins both circles of members into one.
+            int next1 = next[root1];
+            next[root1] = next[root2];
+            next[root2] = next1;
+            changed = true;
+        }
+    }
+
+    /**
+     * Growable list of longs, so the references aren't boxed.
+     */
+    private static class References {
+
+        private long[] values = new long[64];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model;
+
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.TieredMergePolicy;
+
+import lombok.Getter;
+
+/**
+ * Named IndexWriter settings, selected by the case's "index_profile" setting.
+ *
+ * @author Marten4n6
+ */
+public enum IndexProfile {
+
+    /**
+     * Lucene's defaults.
+     */
+    DEFAULT("default",
+            IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB, IndexWriterConfig.DISABLE_AUTO_FLUSH,
+            ConcurrentMergeScheduler.AUTO_DETECT_MERGES_AND_THREADS, ConcurrentMergeScheduler.AUTO_DETECT_MERGES_AND_THREADS,
+            10, true, false),
+
+    /**
+     * Large flushes, no compound files and small segments are merged in large batches,
+     * merges of large segments wait until the final commit. Fastest when indexing a lot of sources at once.
+     */
+    BULK("bulk",
+            512, IndexWriterConfig.DISABLE_AUTO_FLUSH,
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2) + 5, Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+            30, false, true),
+
+    /**
+     * Small flushes and a single merge thread, for machines with little memory.
+     */
+    LOW_MEMORY("low-memory",
+            8, 1000,
+            2, 1,
+            10, true, false);
+
+    private final @Getter String name;
+    private final @Getter double ramBufferMB;
+    private final @Getter int maxBufferedDocs;
+    private final @Getter int maxMerges;
+    private final @Getter int mergeThreads;
+    private final @Getter double segmentsPerTier;
+    private final @Getter boolean compoundFile;
+
+    /**
+     * If true, only small segments are merged while indexing (see {@link #createIngestMergePolicy()}),
+     * the other merges are done when the indexer is closed.
+     */
+    private final @Getter boolean deferMerges;
+
+    /**
+     * Segments smaller than this are merged as if they were this size, while merges are deferred.
+     */
+    private static final double INGEST_FLOOR_SEGMENT_MB = 2048;
+
+    /**
+     * The maximum size of a segment merged while merges are deferred.
+     */
+    private static final double INGEST_MAX_MERGED_SEGMENT_MB = 2048;
+
+    IndexProfile(String name, double ramBufferMB, int maxBufferedDocs, int maxMerges, int mergeThreads,
+                 double segmentsPerTier, boolean compoundFile, boolean deferMerges) {
+        this.name = name;
+        this.ramBufferMB = ramBufferMB;
+        this.maxBufferedDocs = maxBufferedDocs;
+        this.maxMerges = maxMerges;
+        this.mergeThreads = mergeThreads;
+        this.segmentsPerTier = segmentsPerTier;
+        this.compoundFile = compoundFile;
+        this.deferMerges = deferMerges;
+    }
+
+    /**
+     * @return The profile with the name, otherwise the default profile.
+     */
+    public static IndexProfile fromName(String name) {
+        for (IndexProfile profile : values()) {
+            if (profile.name.equalsIgnoreCase(name)) {
+                return profile;
+            }
+        }
+        return DEFAULT;
+    }
+
+    /**
+     * @return A new IndexWriterConfig using this profile's settings.
+     */
+    public IndexWriterConfig createConfig() {
+        IndexWriterConfig configuration = new IndexWriterConfig();
+        ConcurrentMergeScheduler mergeScheduler = new ConcurrentMergeScheduler();
+
+        mergeScheduler.setMaxMergesAndThreads(maxMerges, mergeThreads);
+
+        configuration.setRAMBufferSizeMB(ramBufferMB);
+        configuration.setMaxBufferedDocs(maxBufferedDocs);
+        configuration.setMergeScheduler(mergeScheduler);
+        configuration.setUseCompoundFile(compoundFile);
+        configuration.setMergePolicy(deferMerges ? createIngestMergePolicy() : createMergePolicy());
+        return configuration;
+    }
+
+    /**
+     * Merge policy which keeps the amount of segments (and open files) bounded while indexing,
+     * even when the searcher is refreshed or the index committed often, without merging large segments.
+     * Every flushed segment counts as the floor size, so up to segments-per-tier of them are merged at once.
+     *
+     * @return The merge policy used while merges are deferred.
+     */
+    public MergePolicy createIngestMergePolicy() {
+        TieredMergePolicy mergePolicy = (TieredMergePolicy) createMergePolicy();
+
+        mergePolicy.setFloorSegmentMB(INGEST_FLOOR_SEGMENT_MB);
+        mergePolicy.setMaxMergedSegmentMB(INGEST_MAX_MERGED_SEGMENT_MB);
+        mergePolicy.setMaxMergeAtOnce((int) segmentsPerTier);
+        return mergePolicy;
+    }
+
+    /**
+     * @return The merge policy used once merging isn't deferred (anymore).
+     */
+    public MergePolicy createMergePolicy() {
+        TieredMergePolicy mergePolicy = new TieredMergePolicy();
+
+        mergePolicy.setSegmentsPerTier(segmentsPerTier);
+        mergePolicy.setNoCFSRatio(compoundFile ? TieredMergePolicy.DEFAULT_NO_CFS_RATIO : 0);
+        return mergePolicy;
+    }
+}
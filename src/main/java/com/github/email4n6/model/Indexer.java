@@ -22,6 +22,10 @@ import java.nio.file.Paths;
 
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 
@@ -39,30 +43,109 @@ import lombok.extern.slf4j.Slf4j;
 public class Indexer {
 
     private @Getter IndexWriter indexWriter;
+    private IndexProfile profile;
+    private String caseName;
 
     public Indexer(String caseName) {
+        this.caseName = caseName;
+
         try {
             // https://lucene.apache.org/core/7_4_0/core/org/apache/lucene/store/FSDirectory.html
             // https://lucene.apache.org/core/7_4_0/core/org/apache/lucene/index/IndexWriterConfig.html
             // https://lucene.apache.org/core/7_4_0/core/org/apache/lucene/index/IndexWriter.html
             log.info("Initializing the indexer...");
 
+            profile = IndexProfile.fromName(Settings.get(caseName, "index_profile"));
+            log.info("Using the \"{}\" index profile.", profile.getName());
+
             Directory directory = FSDirectory.open(Paths.get(PathUtils.getIndexPath(caseName)));
-            IndexWriterConfig configuration = new IndexWriterConfig();
+            IndexWriterConfig configuration = profile.createConfig();
             indexWriter = new IndexWriter(directory, configuration);
+
+            if (!profile.isDeferMerges()) {
+                // Searches in this process see documents before they're committed.
+                // Not while merges are deferred, every refresh would flush another small segment,
+                // searches then see the last commit (see SearcherService).
+                SearcherService.openFromWriter(caseName, indexWriter);
+            }
+        } catch (IOException ex) {
+            log.error(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Deletes all documents of the source.
+     *
+     * @param sourceID The ID stored in the "source_id" field of the source's documents.
+     */
+    public void deleteSource(String sourceID) {
+        try {
+            log.info("Deleting documents of source: {}", sourceID);
+
+            indexWriter.deleteDocuments(new Term("source_id", sourceID));
+            ConversationIndex.get(caseName).removeSource(sourceID);
+        } catch (IOException ex) {
+            log.error(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Deletes the documents of the source which match the term.
+     */
+    public void deleteSource(String sourceID, Term term) {
+        try {
+            BooleanQuery query = new BooleanQuery.Builder()
+                    .add(new TermQuery(new Term("source_id", sourceID)), BooleanClause.Occur.FILTER)
+                    .add(new TermQuery(term), BooleanClause.Occur.FILTER)
+                    .build();
+
+            indexWriter.deleteDocuments(query);
         } catch (IOException ex) {
             log.error(ex.getMessage(), ex);
         }
     }
 
     /**
-     * Commits and closes the indexer.
+     * Deletes all documents, used for indexes which can't be tied to sources.
+     */
+    public void deleteAll() {
+        try {
+            log.info("Deleting all documents...");
+
+            indexWriter.deleteAll();
+            ConversationIndex.get(caseName).clear();
+        } catch (IOException ex) {
+            log.error(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Commits all pending changes.
+     */
+    public void commit() {
+        try {
+            indexWriter.commit();
+        } catch (IOException ex) {
+            log.error(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Commits and closes the indexer, deferred merges are done first.
      */
     public void close() {
         try {
             log.info("Closing the indexer...");
 
+            if (profile.isDeferMerges()) {
+                log.info("Merging segments...");
+
+                indexWriter.getConfig().setMergePolicy(profile.createMergePolicy());
+                indexWriter.maybeMerge();
+            }
+
             indexWriter.commit();
+            SearcherService.writerClosing(caseName);
             indexWriter.close();
         } catch (IOException ex) {
             log.error(ex.getMessage(), ex);
@@ -0,0 +1,212 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+import com.github.email4n6.utils.PathUtils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Shares one searcher per case between everything that searches the index.
+ * While the case is being indexed (except with a profile which defers merges) the searcher is
+ * opened from the IndexWriter, so a search in the same process sees documents before they're committed.
+ * Searchers are only refreshed on demand (see {@link #maybeRefresh()}), since every
+ * near-real-time refresh flushes a new segment.
+ * <p>
+ * Nothing searches while indexing yet: the search tabs are created once parsing has finished
+ * and the command line ingests and searches in separate processes.
+ * <p>
+ * Every acquired searcher must be released again:
+ * <pre>
+ * IndexSearcher searcher = searcherService.acquire();
+ * try {
+ *     ...
+ * } finally {
+ *     searcherService.release(searcher);
+ * }
+ * </pre>
+ *
+ * @author Marten4n6
+ */
+@Slf4j
+public class SearcherService {
+
+    private static final Map<String, SearcherService> services = new HashMap<>();
+
+    private final String caseName;
+    private Directory directory;
+    private SearcherManager searcherManager;
+
+    /**
+     * Searchers are acquired and refreshed with the read lock, the manager is replaced with the write lock.
+     */
+    private final ReadWriteLock managerLock = new ReentrantReadWriteLock();
+
+    private SearcherService(String caseName) {
+        this.caseName = caseName;
+    }
+
+    /**
+     * @return The searcher service of the case.
+     */
+    public static synchronized SearcherService get(String caseName) {
+        return services.computeIfAbsent(caseName, SearcherService::new);
+    }
+
+    /**
+     * Makes the service search the writer's (uncommitted) documents, called when the indexer is created.
+     */
+    static synchronized void openFromWriter(String caseName, IndexWriter indexWriter) {
+        try {
+            get(caseName).setSearcherManager(new SearcherManager(indexWriter, null));
+        } catch (IOException ex) {
+            log.error(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Makes the service search the index directory again, called before the indexer is closed.
+     */
+    static synchronized void writerClosing(String caseName) {
+        SearcherService service = services.get(caseName);
+
+        if (service != null) {
+            try {
+                service.setSearcherManager(service.openFromDirectory());
+            } catch (IOException ex) {
+                log.error(ex.getMessage(), ex);
+                service.setSearcherManager(null);
+            }
+        }
+    }
+
+    /**
+     * Closes the searcher service of the case, if it exists.
+     */
+    public static synchronized void close(String caseName) {
+        SearcherService service = services.remove(caseName);
+
+        if (service != null) {
+            service.setSearcherManager(null);
+
+            try {
+                if (service.directory != null) {
+                    service.directory.close();
+                }
+            } catch (IOException ex) {
+                log.error(ex.getMessage(), ex);
+            }
+        }
+    }
+
+    /**
+     * @return A searcher, which must be released after use.
+     * @throws IOException If the index couldn't be opened.
+     */
+    public IndexSearcher acquire() throws IOException {
+        managerLock.readLock().lock();
+
+        try {
+            if (searcherManager != null) {
+                return searcherManager.acquire();
+            }
+        } finally {
+            managerLock.readLock().unlock();
+        }
+
+        managerLock.writeLock().lock();
+
+        try {
+            if (searcherManager == null) {
+                searcherManager = openFromDirectory();
+            }
+            return searcherManager.acquire();
+        } finally {
+            managerLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Releases a searcher returned by {@link #acquire()}.
+     */
+    public void release(IndexSearcher searcher) {
+        try {
+            // Same as SearcherManager#release, which works even if the manager has been replaced since.
+            searcher.getIndexReader().decRef();
+        } catch (IOException ex) {
+            log.error(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Makes recently added documents searchable, if there are any.
+     * Called before a new search, so searchers are only refreshed when someone searches.
+     */
+    public void maybeRefresh() {
+        managerLock.readLock().lock();
+
+        try {
+            if (searcherManager != null) {
+                searcherManager.maybeRefresh();
+            }
+        } catch (IOException | RuntimeException ex) {
+            log.error("Failed to refresh the searcher: {}", ex.getMessage(), ex);
+        } finally {
+            managerLock.readLock().unlock();
+        }
+    }
+
+    private synchronized SearcherManager openFromDirectory() throws IOException {
+        if (directory == null) {
+            directory = FSDirectory.open(Paths.get(PathUtils.getIndexPath(caseName)));
+        }
+        return new SearcherManager(directory, null);
+    }
+
+    /**
+     * Replaces the searcher manager, searchers acquired from the previous manager stay usable until released.
+     */
+    private void setSearcherManager(SearcherManager newSearcherManager) {
+        managerLock.writeLock().lock();
+
+        try {
+            if (searcherManager != null) {
+                searcherManager.close();
+            }
+            searcherManager = newSearcherManager;
+        } catch (IOException ex) {
+            log.error(ex.getMessage(), ex);
+            searcherManager = newSearcherManager;
+        } finally {
+            managerLock.writeLock().unlock();
+        }
+    }
+}
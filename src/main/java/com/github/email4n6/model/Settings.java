@@ -29,6 +29,7 @@ import lombok.extern.slf4j.Slf4j;
 
 /**
  * Static class which handles settings.
+ * Synchronized since parsers may run in parallel.
  *
  * @author Marten4n6
  */
@@ -42,7 +43,7 @@ public final class Settings {
     /**
      * Sets the value of the key.
      */
-    public static void set(String caseName, String key, String value) {
+    public static synchronized void set(String caseName, String key, String value) {
         try {
             Properties properties = new Properties();
 
@@ -64,7 +65,7 @@ public final class Settings {
     /**
      * @return The value of the key otherwise an empty string.
      */
-    public static String get(String caseName, String key) {
+    public static synchronized String get(String caseName, String key) {
         try {
             Properties properties = new Properties();
             @Cleanup FileInputStream inputStream = new FileInputStream(PathUtils.getSettingsFile(caseName));
@@ -75,4 +76,15 @@ public final class Settings {
             return "";
         }
     }
+
+    /**
+     * @return The numeric value of the key otherwise the default value.
+     */
+    public static int getInt(String caseName, String key, int defaultValue) {
+        try {
+            return Integer.parseInt(get(caseName, key));
+        } catch (NumberFormatException ex) {
+            return defaultValue;
+        }
+    }
 }
@@ -17,6 +17,7 @@
  */
 package com.github.email4n6.model.message;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.Date;
 
@@ -25,6 +26,7 @@ import lombok.Getter;
 
 /**
  * Represents an attachment row.
+ * The content isn't kept, every read opens a new stream from the source (which must be closed).
  *
  * @author Marten4n6
  */
@@ -34,5 +36,20 @@ public class AttachmentRow {
     private @Getter String attachmentName;
     private @Getter long size;
     private @Getter Date lastModificationTime;
-    private @Getter InputStream inputStream;
+    private ContentOpener contentOpener;
+
+    /**
+     * @return A new stream of the attachment's content.
+     */
+    public InputStream openInputStream() throws IOException {
+        return contentOpener.open();
+    }
+
+    /**
+     * Opens the content of an attachment.
+     */
+    public interface ContentOpener {
+
+        InputStream open() throws IOException;
+    }
 }
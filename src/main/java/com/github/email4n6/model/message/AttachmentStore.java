@@ -0,0 +1,178 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model.message;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Content addressed store of attachments, every file is named after the SHA-256 of it's content.
+ * The same attachment of many messages is only stored once, exported files are hard links to the stored copy.
+ * <p>
+ * Attachments are hashed in memory, only attachments larger than {@link #MEMORY_THRESHOLD}
+ * are spooled to a temporary file while they're hashed. New content is moved into place
+ * with an atomic rename, so a stored file is never seen half written. Stored files are never read again.
+ * Safe to use from multiple threads.
+ *
+ * @author Marten4n6
+ */
+@Slf4j
+public class AttachmentStore {
+
+    /**
+     * Attachments up to this size (in bytes) are kept in memory while they're hashed.
+     */
+    static final int MEMORY_THRESHOLD = 1024 * 1024;
+
+    private final @Getter Path folder;
+
+    private final AtomicLong storedAmount = new AtomicLong(0);
+    private final AtomicLong duplicateAmount = new AtomicLong(0);
+    private final AtomicLong spooledAmount = new AtomicLong(0);
+    private final AtomicLong linkCounter = new AtomicLong(0);
+
+    /**
+     * @param folder The folder of the store, created if it doesn't exist.
+     */
+    public AttachmentStore(Path folder) throws IOException {
+        this.folder = Files.createDirectories(folder);
+    }
+
+    /**
+     * Stores the attachment's content, read from a newly opened stream.
+     *
+     * @return The stored copy.
+     */
+    public Path store(AttachmentRow attachment) throws IOException {
+        MessageDigest digest = createDigest();
+        ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        Path tempFile = null;
+
+        try {
+            OutputStream outputStream = memory;
+
+            try (InputStream inputStream = attachment.openInputStream()) {
+                byte[] buffer = new byte[64 * 1024];
+                long total = 0;
+                int read;
+
+                while ((read = inputStream.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                    total += read;
+
+                    if (tempFile == null && total > MEMORY_THRESHOLD) {
+                        tempFile = Files.createTempFile(folder, "attachment", ".tmp");
+                        spooledAmount.incrementAndGet();
+
+                        outputStream = Files.newOutputStream(tempFile);
+                        memory.writeTo(outputStream);
+                        memory = null;
+                    }
+                    outputStream.write(buffer, 0, read);
+                }
+            } finally {
+                outputStream.close();
+            }
+
+            Path storedFile = folder.resolve(toHex(digest.digest()));
+
+            if (Files.exists(storedFile)) {
+                duplicateAmount.incrementAndGet();
+                return storedFile;
+            }
+
+            if (tempFile == null) {
+                tempFile = Files.createTempFile(folder, "attachment", ".tmp");
+                Files.write(tempFile, memory.toByteArray());
+            }
+
+            // If another thread stored the same content in the meantime, it's replaced by identical content.
+            Files.move(tempFile, storedFile, StandardCopyOption.ATOMIC_MOVE);
+            storedAmount.incrementAndGet();
+            return storedFile;
+        } finally {
+            if (tempFile != null) {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+    }
+
+    /**
+     * Stores the attachment and creates the target as a hard link to the stored copy,
+     * the stored copy is copied instead if the file system doesn't support hard links.
+     * The target is replaced in one step, unless it's already linked to the stored copy.
+     *
+     * @param target The exported file, replaced if it exists.
+     */
+    public void export(AttachmentRow attachment, Path target) throws IOException {
+        Path storedFile = store(attachment);
+
+        if (Files.exists(target) && Files.isSameFile(target, storedFile)) {
+            return;
+        }
+
+        // Linked next to the target first, so the target is replaced by renaming.
+        Path tempLink = target.resolveSibling(target.getFileName() + ".link" + linkCounter.incrementAndGet() + ".tmp");
+
+        try {
+            try {
+                Files.createLink(tempLink, storedFile);
+            } catch (UnsupportedOperationException | FileSystemException ex) {
+                log.debug("Failed to link \"{}\", copying instead: {}", target, ex.getMessage());
+                Files.copy(storedFile, tempLink, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(tempLink, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempLink);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d stored, %d duplicates, %d spooled to disk", storedAmount.get(), duplicateAmount.get(), spooledAmount.get());
+    }
+
+    private static MessageDigest createDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+
+        for (byte b : bytes) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+}
@@ -24,19 +24,25 @@ import javafx.beans.property.StringProperty;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.ToString;
 
 /**
  * Represents a message row.
  */
 @Builder
-@EqualsAndHashCode(exclude = {"bookmarked", "tag"})
+@EqualsAndHashCode(exclude = {"bookmarked", "tag", "copies"})
 @ToString
 public class MessageRow {
 
-    private @Getter String subject, from, to, cc, id, folderID;
+    private @Getter String subject, from, to, cc, id, folderID, type;
     private @Getter long size;
     private @Getter Date receivedDate;
     private @Getter BooleanProperty bookmarked;
     private @Getter StringProperty tag;
+
+    /**
+     * The amount of copies of this message in the search results, 0 if not counted.
+     */
+    private @Getter @Setter int copies;
 }
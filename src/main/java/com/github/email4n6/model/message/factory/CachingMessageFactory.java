@@ -0,0 +1,276 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model.message.factory;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.lucene.document.Document;
+
+import com.github.email4n6.model.Case;
+import com.github.email4n6.model.Settings;
+import com.github.email4n6.model.message.AttachmentRow;
+import com.github.email4n6.model.message.MessageRow;
+import com.github.email4n6.model.message.MessageValue;
+import com.github.email4n6.view.tabs.tree.TreeObject;
+
+import javafx.scene.control.TreeItem;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps recently used message values in memory, so selecting a message again (or
+ * reporting on it) doesn't read and decode it again. The cache is limited by the
+ * size of the decoded bodies, headers and attachment names, the least recently used values are evicted first.
+ * Attachment rows don't hold their content, it's read from the source when an attachment is opened.
+ *
+ * @author Marten4n6
+ */
+@Slf4j
+public class CachingMessageFactory implements MessageFactory {
+
+    private final MessageFactory factory;
+    private final long maxBytes;
+
+    /**
+     * Access ordered, so the first entry is the least recently used.
+     */
+    private final LinkedHashMap<String, CachedValue> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    /**
+     * Parsers may not support being accessed by multiple threads,
+     * so prefetching and other requests load one value at a time.
+     * The lock is fair and prefetching takes it once per message, so a waiting
+     * request is loaded before the next prefetched message.
+     */
+    private final ReentrantLock loadLock = new ReentrantLock(true);
+
+    /**
+     * Only the latest prefetch request is kept, older ones are stale once the selection moved.
+     */
+    private final AtomicReference<List<String>> pendingPrefetch = new AtomicReference<>();
+    private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "MessagePrefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+
+    public CachingMessageFactory(MessageFactory factory, Case currentCase) {
+        this.factory = factory;
+        this.maxBytes = Settings.getInt(currentCase.getName(), "message_cache_mb", 64) * 1024L * 1024L;
+    }
+
+    @Override
+    public MessageRow getMessageRow(String id) {
+        return factory.getMessageRow(id);
+    }
+
+    @Override
+    public MessageRow getMessageRow(Document document) {
+        return factory.getMessageRow(document);
+    }
+
+    @Override
+    public List<MessageRow> getMessageRows(List<Document> documents) {
+        return factory.getMessageRows(documents);
+    }
+
+    @Override
+    public List<MessageRow> getMessageRowsByID(List<String> ids) {
+        return factory.getMessageRowsByID(ids);
+    }
+
+    @Override
+    public List<MessageRow> getConversation(String id) {
+        return factory.getConversation(id);
+    }
+
+    @Override
+    public MessageValue getMessageValue(String id) {
+        MessageValue messageValue = getCachedValue(id);
+
+        if (messageValue != null) {
+            hits.incrementAndGet();
+            return messageValue;
+        }
+
+        misses.incrementAndGet();
+        messageValue = load(id);
+
+        if ((hits.get() + misses.get()) % 100 == 0) {
+            log.debug("Message cache: {}", this);
+        }
+        return messageValue;
+    }
+
+    /**
+     * Loads the values of the messages in the background, if they aren't cached already.
+     * Replaces any earlier request which hasn't been loaded yet.
+     */
+    @Override
+    public void prefetch(List<String> ids) {
+        if (pendingPrefetch.getAndSet(ids) == null) {
+            prefetchExecutor.execute(this::runPrefetch);
+        }
+    }
+
+    @Override
+    public List<MessageRow> getMessagesFromTreeItem(TreeItem<TreeObject> treeItem) {
+        return factory.getMessagesFromTreeItem(treeItem);
+    }
+
+    @Override
+    public List<String> getMessageIDsFromTreeItem(TreeItem<TreeObject> treeItem) {
+        return factory.getMessageIDsFromTreeItem(treeItem);
+    }
+
+    /**
+     * @return The fraction of requests answered from the cache.
+     */
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    @Override
+    public String toString() {
+        synchronized (cache) {
+            return String.format("%d values, %d/%d KB, %d hits, %d misses (%.1f%%), %d evictions",
+                    cache.size(), cachedBytes / 1024, maxBytes / 1024, hits.get(), misses.get(), getHitRate() * 100, evictions.get());
+        }
+    }
+
+    private MessageValue getCachedValue(String id) {
+        synchronized (cache) {
+            CachedValue cachedValue = cache.get(id);
+
+            return cachedValue == null ? null : cachedValue.messageValue;
+        }
+    }
+
+    /**
+     * Loads the latest prefetch request, stops as soon as a newer request replaces it.
+     */
+    private void runPrefetch() {
+        List<String> ids = pendingPrefetch.get();
+
+        while (ids != null) {
+            for (String id : ids) {
+                if (pendingPrefetch.get() != ids) {
+                    break;
+                }
+                if (getCachedValue(id) == null) {
+                    load(id);
+                }
+            }
+
+            if (pendingPrefetch.compareAndSet(ids, null)) {
+                ids = null;
+            } else {
+                ids = pendingPrefetch.get();
+            }
+        }
+    }
+
+    private MessageValue load(String id) {
+        loadLock.lock();
+
+        try {
+            // May have been loaded while waiting for the lock.
+            MessageValue messageValue = getCachedValue(id);
+
+            if (messageValue == null) {
+                messageValue = factory.getMessageValue(id);
+
+                if (messageValue != null) {
+                    put(id, messageValue);
+                }
+            }
+            return messageValue;
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    private void put(String id, MessageValue messageValue) {
+        long weight = getWeight(messageValue);
+
+        if (weight > maxBytes) {
+            return;
+        }
+
+        synchronized (cache) {
+            CachedValue previous = cache.put(id, new CachedValue(messageValue, weight));
+
+            if (previous != null) {
+                cachedBytes -= previous.weight;
+            }
+            cachedBytes += weight;
+
+            Iterator<CachedValue> iterator = cache.values().iterator();
+
+            while (cachedBytes > maxBytes && iterator.hasNext()) {
+                cachedBytes -= iterator.next().weight;
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return The approximate amount of memory used by the decoded text and attachment rows, in bytes.
+     */
+    private long getWeight(MessageValue messageValue) {
+        long characters = 0;
+
+        if (messageValue.getBody() != null) characters += messageValue.getBody().length();
+        if (messageValue.getHeaders() != null) characters += messageValue.getHeaders().length();
+
+        long attachmentBytes = 0;
+
+        if (messageValue.getAttachments() != null) {
+            for (AttachmentRow attachment : messageValue.getAttachments()) {
+                if (attachment.getAttachmentName() != null) characters += attachment.getAttachmentName().length();
+                attachmentBytes += 96;
+            }
+        }
+        return characters * 2 + attachmentBytes + 64;
+    }
+
+    private static class CachedValue {
+
+        private final MessageValue messageValue;
+        private final long weight;
+
+        CachedValue(MessageValue messageValue, long weight) {
+            this.messageValue = messageValue;
+            this.weight = weight;
+        }
+    }
+}
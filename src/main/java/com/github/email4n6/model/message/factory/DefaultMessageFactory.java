@@ -20,6 +20,8 @@ package com.github.email4n6.model.message.factory;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.lucene.document.Document;
+
 import com.github.email4n6.model.Case;
 import com.github.email4n6.model.message.MessageRow;
 import com.github.email4n6.model.message.MessageValue;
@@ -41,6 +43,8 @@ public class DefaultMessageFactory implements MessageFactory {
     private List<MessageFactory> factories = new ArrayList<>();
 
     public DefaultMessageFactory(Case currentCase, BookmarksModel bookmarksModel, TagModel tagModel, SearchModel searchModel) {
+        // Rows are built from the index, parsers are only needed for older indexes and message values.
+        factories.add(new IndexMessageFactory(bookmarksModel, tagModel, searchModel));
         factories.add(new PSTMessageFactory(currentCase, bookmarksModel, tagModel, searchModel));
     }
 
@@ -54,6 +58,46 @@ public class DefaultMessageFactory implements MessageFactory {
         return null;
     }
 
+    @Override
+    public MessageRow getMessageRow(Document document) {
+        for (MessageFactory factory : factories) {
+            MessageRow messageRow = factory.getMessageRow(document);
+
+            if (messageRow != null) return messageRow;
+        }
+        return null;
+    }
+
+    @Override
+    public List<MessageRow> getMessageRows(List<Document> documents) {
+        for (MessageFactory factory : factories) {
+            List<MessageRow> rows = factory.getMessageRows(documents);
+
+            if (rows != null) return rows;
+        }
+        return null;
+    }
+
+    @Override
+    public List<MessageRow> getMessageRowsByID(List<String> ids) {
+        for (MessageFactory factory : factories) {
+            List<MessageRow> rows = factory.getMessageRowsByID(ids);
+
+            if (rows != null) return rows;
+        }
+        return null;
+    }
+
+    @Override
+    public List<MessageRow> getConversation(String id) {
+        for (MessageFactory factory : factories) {
+            List<MessageRow> rows = factory.getConversation(id);
+
+            if (rows != null) return rows;
+        }
+        return null;
+    }
+
     @Override
     public MessageValue getMessageValue(String id) {
         for (MessageFactory factory : factories) {
@@ -73,4 +117,14 @@ public class DefaultMessageFactory implements MessageFactory {
         }
         return null;
     }
+
+    @Override
+    public List<String> getMessageIDsFromTreeItem(TreeItem<TreeObject> item) {
+        for (MessageFactory factory : factories) {
+            List<String> ids = factory.getMessageIDsFromTreeItem(item);
+
+            if (ids != null && !ids.isEmpty()) return ids;
+        }
+        return null;
+    }
 }
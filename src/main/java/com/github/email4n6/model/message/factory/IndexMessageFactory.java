@@ -0,0 +1,265 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model.message.factory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.BytesRef;
+
+import com.github.email4n6.model.ConversationIndex;
+import com.github.email4n6.model.message.MessageRow;
+import com.github.email4n6.model.message.MessageValue;
+import com.github.email4n6.view.tabs.bookmarks.BookmarksModel;
+import com.github.email4n6.view.tabs.bookmarks.TagModel;
+import com.github.email4n6.view.tabs.search.SearchModel;
+import com.github.email4n6.view.tabs.tree.TreeObject;
+
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.control.TreeItem;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Creates message rows from the fields parsers store in the index, without accessing the source.
+ * Message values can only be created by the parser's own factory.
+ *
+ * @author Marten4n6
+ */
+@Slf4j
+public class IndexMessageFactory implements MessageFactory {
+
+    /**
+     * Stored fields of the message table row.
+     */
+    public static final String ROW_TYPE = "row_type";
+    public static final String ROW_SUBJECT = "row_subject";
+    public static final String ROW_FROM = "row_from";
+    public static final String ROW_TO = "row_to";
+    public static final String ROW_CC = "row_cc";
+    public static final String ROW_SIZE = "row_size";
+    public static final String ROW_RECEIVED = "row_received";
+
+    /**
+     * Normalized Message-IDs (lower case, without angle brackets) of the transport headers, with doc values.
+     * The conversation key is the hash of the message's own Message-ID, see ConversationIndex.
+     */
+    public static final String MESSAGE_ID = "message_id";
+    public static final String IN_REPLY_TO = "in_reply_to";
+    public static final String REFERENCES = "references";
+    public static final String CONVERSATION_KEY = "conversation_key";
+
+    /**
+     * The maximum amount of messages of a conversation.
+     */
+    private static final int MAX_CONVERSATION_SIZE = 10000;
+
+    private BookmarksModel bookmarksModel;
+    private TagModel tagModel;
+    private SearchModel searchModel;
+
+    public IndexMessageFactory(BookmarksModel bookmarksModel, TagModel tagModel, SearchModel searchModel) {
+        this.bookmarksModel = bookmarksModel;
+        this.tagModel = tagModel;
+        this.searchModel = searchModel;
+    }
+
+    @Override
+    public MessageRow getMessageRow(String id) {
+        List<Document> results = searchModel.search(new TermQuery(new Term("id", id)), 1);
+
+        return results.isEmpty() ? null : getMessageRow(results.get(0));
+    }
+
+    /**
+     * @return The row, null if the document was indexed without row fields.
+     */
+    @Override
+    public MessageRow getMessageRow(Document document) {
+        if (document.get(ROW_TYPE) == null) {
+            return null;
+        }
+
+        String id = document.get("id");
+        return createRow(document, bookmarksModel.isBookmark(id), tagModel.getTag(id));
+    }
+
+    /**
+     * Looks up the bookmarks and tags of all documents at once.
+     *
+     * @return The rows, null if any document was indexed without row fields.
+     */
+    @Override
+    public List<MessageRow> getMessageRows(List<Document> documents) {
+        List<String> ids = new ArrayList<>(documents.size());
+
+        for (Document document : documents) {
+            if (document.get(ROW_TYPE) == null) {
+                return null;
+            }
+            ids.add(document.get("id"));
+        }
+
+        Set<String> bookmarks = bookmarksModel.getBookmarks(ids);
+        Map<String, String> tags = tagModel.getTags(ids);
+        List<MessageRow> rows = new ArrayList<>(documents.size());
+
+        for (Document document : documents) {
+            String id = document.get("id");
+
+            rows.add(createRow(document, bookmarks.contains(id), tags.get(id)));
+        }
+        return rows;
+    }
+
+    /**
+     * Looks up the documents of all IDs with one query.
+     *
+     * @return The rows (null for IDs which aren't indexed), null if any document was indexed without row fields.
+     */
+    @Override
+    public List<MessageRow> getMessageRowsByID(List<String> ids) {
+        List<BytesRef> terms = new ArrayList<>(ids.size());
+        ids.forEach(id -> terms.add(new BytesRef(id)));
+
+        Map<String, Document> documents = new HashMap<>();
+
+        for (Document document : searchModel.search(new TermInSetQuery("id", terms), Math.max(1, ids.size()))) {
+            documents.put(document.get("id"), document);
+        }
+
+        List<MessageRow> rows = getMessageRows(new ArrayList<>(documents.values()));
+
+        if (rows == null) {
+            return null;
+        }
+
+        Map<String, MessageRow> rowsByID = new HashMap<>();
+        rows.forEach(row -> rowsByID.put(row.getId(), row));
+
+        List<MessageRow> orderedRows = new ArrayList<>(ids.size());
+        ids.forEach(id -> orderedRows.add(rowsByID.get(id)));
+        return orderedRows;
+    }
+
+    /**
+     * Looks up the messages of the whole conversation with one query, by their conversation key.
+     *
+     * @return The rows from old to new, null if the message was indexed without a conversation key.
+     */
+    @Override
+    public List<MessageRow> getConversation(String id) {
+        List<Document> results = searchModel.search(new TermQuery(new Term("id", id)), 1);
+
+        if (results.isEmpty() || results.get(0).get(CONVERSATION_KEY) == null) {
+            return null;
+        }
+
+        long key = Long.parseUnsignedLong(results.get(0).get(CONVERSATION_KEY), 16);
+        List<BytesRef> terms = new ArrayList<>();
+
+        for (long member : ConversationIndex.get(searchModel.getCaseName()).getConversation(key)) {
+            terms.add(new BytesRef(ConversationIndex.toTerm(member)));
+        }
+
+        List<MessageRow> rows = getMessageRows(searchModel.search(new TermInSetQuery(CONVERSATION_KEY, terms), MAX_CONVERSATION_SIZE));
+
+        if (rows == null) {
+            return null;
+        }
+
+        rows.sort(Comparator.comparing(MessageRow::getReceivedDate, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return rows;
+    }
+
+    private MessageRow createRow(Document document, boolean bookmarked, String tag) {
+        SimpleBooleanProperty bookmarkedProperty = new SimpleBooleanProperty(bookmarked);
+        SimpleStringProperty tagProperty = new SimpleStringProperty(tag);
+
+        MessageRow messageRow = MessageRow.builder()
+                .id(document.get("id"))
+                .folderID(document.get("folder_id"))
+                .type(document.get(ROW_TYPE))
+                .subject(document.get(ROW_SUBJECT))
+                .from(document.get(ROW_FROM))
+                .to(document.get(ROW_TO))
+                .cc(document.get(ROW_CC))
+                .size(getLong(document, ROW_SIZE, 0))
+                .receivedDate(document.getField(ROW_RECEIVED) == null ? null : new Date(getLong(document, ROW_RECEIVED, 0)))
+                .bookmarked(bookmarkedProperty)
+                .tag(tagProperty).build();
+
+        // Bookmark listener
+        bookmarkedProperty.addListener((ObservableValue<? extends Boolean> observable, Boolean oldValue, Boolean newValue) -> {
+            if (newValue) {
+                log.debug("Adding bookmark (callback): {}", messageRow.getId());
+                bookmarksModel.addBookmark(messageRow);
+            } else {
+                log.debug("Removing bookmark (callback): {}", messageRow.getId());
+                bookmarksModel.removeBookmark(messageRow);
+            }
+        });
+        // Tag listener
+        tagProperty.addListener((ObservableValue<? extends String> observable, String oldValue, String newValue) -> {
+            if (!newValue.equals(oldValue)) {
+                log.debug("Changing tag of \"{}\" to: {}", messageRow.getId(), newValue);
+                tagModel.setTag(messageRow.getId(), newValue);
+            }
+        });
+        return messageRow;
+    }
+
+    @Override
+    public MessageValue getMessageValue(String id) {
+        return null;
+    }
+
+    /**
+     * @return The rows of the folder, null if any message was indexed without row fields.
+     */
+    @Override
+    public List<MessageRow> getMessagesFromTreeItem(TreeItem<TreeObject> treeItem) {
+        if (treeItem.getValue() == null || treeItem.getValue().getFolderID() == null) return new ArrayList<>(0);
+
+        return getMessageRows(searchModel.getFolderDocuments(treeItem.getValue().getFolderID()));
+    }
+
+    @Override
+    public List<String> getMessageIDsFromTreeItem(TreeItem<TreeObject> treeItem) {
+        if (treeItem.getValue() == null || treeItem.getValue().getFolderID() == null) return new ArrayList<>(0);
+
+        return searchModel.getFolderMessageIDs(treeItem.getValue().getFolderID());
+    }
+
+    private long getLong(Document document, String key, long defaultValue) {
+        IndexableField field = document.getField(key);
+
+        return field == null || field.numericValue() == null ? defaultValue : field.numericValue().longValue();
+    }
+}
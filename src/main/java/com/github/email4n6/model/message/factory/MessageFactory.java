@@ -21,7 +21,9 @@ import com.github.email4n6.model.message.MessageRow;
 import com.github.email4n6.model.message.MessageValue;
 import com.github.email4n6.view.tabs.tree.TreeObject;
 import javafx.scene.control.TreeItem;
+import org.apache.lucene.document.Document;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -38,6 +40,53 @@ public interface MessageFactory {
      */
     MessageRow getMessageRow(String id);
 
+    /**
+     * @param document A document from the index, saves looking it up again.
+     * @return A row that can be added to the message table.
+     * @see MessageRow
+     */
+    default MessageRow getMessageRow(Document document) {
+        return getMessageRow(document.get("id"));
+    }
+
+    /**
+     * Creates the rows of multiple documents at once, which
+     * allows factories to look up bookmarks and tags in bulk.
+     *
+     * @return The rows in the same order as the documents, null if the documents aren't supported.
+     */
+    default List<MessageRow> getMessageRows(List<Document> documents) {
+        List<MessageRow> rows = new ArrayList<>(documents.size());
+
+        for (Document document : documents) {
+            rows.add(getMessageRow(document));
+        }
+        return rows;
+    }
+
+    /**
+     * Creates the rows of multiple message IDs at once, used by tables which only create visible rows.
+     *
+     * @return The rows in the same order as the IDs (null for unknown messages), null if the IDs aren't supported.
+     */
+    default List<MessageRow> getMessageRowsByID(List<String> ids) {
+        List<MessageRow> rows = new ArrayList<>(ids.size());
+
+        for (String id : ids) {
+            rows.add(getMessageRow(id));
+        }
+        return rows;
+    }
+
+    /**
+     * @param id The message ID.
+     * @return The rows of the message's conversation (including the message itself) from old to new,
+     * null if the message wasn't indexed with conversation fields.
+     */
+    default List<MessageRow> getConversation(String id) {
+        return null;
+    }
+
     /**
      * @param id The message ID.
      * @return A message value row (body, headers, attachments etc.) otherwise null.
@@ -45,8 +94,31 @@ public interface MessageFactory {
      */
     MessageValue getMessageValue(String id);
 
+    /**
+     * Loads the values of messages which are likely to be requested soon,
+     * only factories which cache values need to implement this.
+     * A new request may replace one which hasn't been loaded yet.
+     *
+     * @param ids The message IDs.
+     */
+    default void prefetch(List<String> ids) {
+    }
+
     /**
      * @return A list of messages from the specified tree item, may return null.
      */
     List<MessageRow> getMessagesFromTreeItem(TreeItem<TreeObject> treeItem);
+
+    /**
+     * @return The IDs of the messages from the specified tree item, may return null.
+     */
+    default List<String> getMessageIDsFromTreeItem(TreeItem<TreeObject> treeItem) {
+        List<MessageRow> rows = getMessagesFromTreeItem(treeItem);
+
+        if (rows == null) return null;
+
+        List<String> ids = new ArrayList<>(rows.size());
+        rows.forEach(row -> ids.add(row.getId()));
+        return ids;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,186 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.email4n6.model.ConversationIndex;
+import com.github.email4n6.model.Indexer;
+import com.github.email4n6.model.Settings;
+import com.github.email4n6.utils.PathUtils;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Commits the index periodically while a source is being indexed and remembers
+ * which parts (for example folders) of the source are committed, so an
+ * interrupted source can continue where it left off.
+ * The interval is set by the case's "checkpoint_documents" and "checkpoint_seconds" settings.
+ *
+ * @author Marten4n6
+ */
+@Slf4j
+public class Checkpoint {
+
+    private final String caseName;
+    private final File checkpointFile;
+    private final Indexer indexer;
+    private final int commitDocuments;
+    private final long commitMillis;
+
+    /**
+     * Parts which are committed.
+     */
+    private final Set<String> done;
+
+    /**
+     * Parts which are completely written but not committed yet.
+     */
+    private final Set<String> finished = new HashSet<>();
+
+    private final AtomicInteger uncommittedDocuments = new AtomicInteger(0);
+    private final AtomicBoolean committing = new AtomicBoolean(false);
+    private volatile long lastCommit = System.currentTimeMillis();
+
+    private Checkpoint(String caseName, File checkpointFile, Indexer indexer, int commitDocuments, long commitMillis, Set<String> done) {
+        this.caseName = caseName;
+        this.checkpointFile = checkpointFile;
+        this.indexer = indexer;
+        this.commitDocuments = commitDocuments;
+        this.commitMillis = commitMillis;
+        this.done = done;
+    }
+
+    /**
+     * @return The checkpoint of the source, empty if the source wasn't (partially) indexed before.
+     */
+    public static Checkpoint load(String caseName, String sourceID, Indexer indexer) {
+        File checkpointFile = getCheckpointFile(caseName, sourceID);
+        Set<String> done = null;
+
+        if (checkpointFile.exists()) {
+            try {
+                String json = new String(Files.readAllBytes(checkpointFile.toPath()), StandardCharsets.UTF_8);
+
+                done = new Gson().fromJson(json, new TypeToken<HashSet<String>>() {}.getType());
+            } catch (IOException | JsonParseException ex) {
+                log.error("Failed to read the checkpoint of source {}, indexing it from the start: {}", sourceID, ex.getMessage(), ex);
+            }
+
+            if (done != null) {
+                log.info("Continuing from checkpoint, {} part(s) of source {} are already indexed.", done.size(), sourceID);
+            }
+        }
+
+        return new Checkpoint(caseName, checkpointFile, indexer,
+                Math.max(1, Settings.getInt(caseName, "checkpoint_documents", 50000)),
+                Math.max(1, Settings.getInt(caseName, "checkpoint_seconds", 300)) * 1000L,
+                done != null ? done : new HashSet<>()
+        );
+    }
+
+    /**
+     * Deletes the checkpoint of the source, called once the source is completely indexed.
+     */
+    public static void delete(String caseName, String sourceID) {
+        try {
+            Files.deleteIfExists(getCheckpointFile(caseName, sourceID).toPath());
+        } catch (IOException ex) {
+            log.error(ex.getMessage(), ex);
+        }
+    }
+
+    private static File getCheckpointFile(String caseName, String sourceID) {
+        return new File(PathUtils.getCheckpointPath(caseName) + File.separator + sourceID + ".json");
+    }
+
+    /**
+     * @return True if the part was committed by a previous attempt.
+     */
+    public synchronized boolean isDone(String part) {
+        return done.contains(part);
+    }
+
+    /**
+     * Called once all documents of the part are written,
+     * the part is remembered after the next commit.
+     */
+    public synchronized void setFinished(String part) {
+        finished.add(part);
+    }
+
+    /**
+     * Called after every written document, commits when the interval is reached.
+     */
+    public void documentWritten() {
+        if (uncommittedDocuments.incrementAndGet() >= commitDocuments || System.currentTimeMillis() - lastCommit >= commitMillis) {
+            commit();
+        }
+    }
+
+    /**
+     * Commits the index and remembers the parts which were finished before the commit.
+     * The conversation index is saved as well, so it links at least the committed documents.
+     */
+    public void commit() {
+        if (!committing.compareAndSet(false, true)) {
+            return; // Another thread is already committing.
+        }
+
+        Set<String> committedParts;
+
+        synchronized (this) {
+            committedParts = new HashSet<>(finished);
+            finished.clear();
+        }
+
+        try {
+            uncommittedDocuments.set(0);
+            lastCommit = System.currentTimeMillis();
+            indexer.getIndexWriter().commit();
+            ConversationIndex.get(caseName).save();
+
+            synchronized (this) {
+                done.addAll(committedParts);
+
+                checkpointFile.getParentFile().mkdirs();
+                PathUtils.writeAtomically(checkpointFile, new Gson().toJson(done).getBytes(StandardCharsets.UTF_8));
+            }
+
+            log.debug("Checkpoint: {} part(s) committed.", done.size());
+        } catch (IOException ex) {
+            log.error(ex.getMessage(), ex);
+
+            synchronized (this) {
+                finished.addAll(committedParts); // Try again with the next commit.
+            }
+        } finally {
+            committing.set(false);
+        }
+    }
+}
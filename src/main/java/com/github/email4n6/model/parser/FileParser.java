@@ -25,14 +25,20 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.github.email4n6.model.Case;
 import com.github.email4n6.model.Indexer;
-import com.github.email4n6.view.tabs.home.loading.LoadingStage;
+import com.github.email4n6.model.Settings;
 
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
@@ -49,46 +55,94 @@ public class FileParser {
 
     private ParserFactory parserFactory;
     private Case currentCase;
-    private LoadingStage loadingStage;
+    private ProgressReporter progressReporter;
     private Indexer indexer;
 
     private @Setter FinishedListener onParsingFinished;
 
-    public FileParser(ParserFactory parserFactory, Case currentCase, LoadingStage loadingStage) {
+    public FileParser(ParserFactory parserFactory, Case currentCase, ProgressReporter progressReporter) {
         this.parserFactory = parserFactory;
         this.currentCase = currentCase;
-        this.loadingStage = loadingStage;
+        this.progressReporter = progressReporter;
         this.indexer = new Indexer(currentCase.getName());
     }
 
     /**
-     * Calls the appropriate parsers on the files.
+     * Calls the appropriate parsers on the files, multiple files are parsed at the
+     * same time (limited by the case's "max_parallel_sources" setting).
+     * Only new or changed files are indexed, documents of changed or removed files are deleted.
      *
      * @param sources The paths of the files to parse.
      */
     public void parseFiles(Set<String> sources) {
-        sources.forEach(source -> {
-            File file = new File(source);
+        int maxParallelSources = Math.max(1, Settings.getInt(
+                currentCase.getName(), "max_parallel_sources", Runtime.getRuntime().availableProcessors()
+        ));
+        Semaphore parallelSources = new Semaphore(maxParallelSources);
+        CountDownLatch countDownLatch = new CountDownLatch(sources.size());
 
-            CountDownLatch countDownLatch = new CountDownLatch(1);
-            AtomicInteger runningParsersForFile = new AtomicInteger(0);
+        log.debug("Parsing {} source(s), at most {} at the same time.", sources.size(), maxParallelSources);
 
-            // Call all supported parsers on the file.
-            parserFactory.getParsers(getFileExtension(file)).forEach(parser -> {
-                runningParsersForFile.incrementAndGet();
+        SourceManifest manifest = SourceManifest.load(currentCase.getName());
+
+        if (manifest.isEmpty() && indexer.getIndexWriter().maxDoc() > 0) {
+            // Indexed before sources were tracked, these documents can't be tied to a source.
+            indexer.deleteAll();
+        }
+
+        for (SourceManifest.Source removedSource : manifest.removeMissing(sources)) {
+            indexer.deleteSource(removedSource.getSourceID());
+            Checkpoint.delete(currentCase.getName(), removedSource.getSourceID());
+        }
+
+        // Start with the largest files, otherwise one huge file which is
+        // started last would keep running long after the others are done.
+        List<File> files = new ArrayList<>();
+        Map<File, SourceManifest.Source> checkedSources = new HashMap<>();
+
+        sources.forEach(source -> files.add(new File(source)));
+        files.sort(Comparator.comparingLong(File::length).reversed());
+        files.forEach(file -> checkedSources.put(file, checkSource(manifest, file)));
+
+        // Commit the deletions, so the saved manifest never claims more than the index contains.
+        indexer.commit();
+        manifest.save();
+
+        for (File file : files) {
+            try {
+                parallelSources.acquire(); // Wait for a running file to finish.
+            } catch (InterruptedException ex) {
+                log.error(ex.getMessage(), ex);
+                return;
+            }
+
+            List<Parser> parsers = parserFactory.getParsers(getFileExtension(file));
+            AtomicInteger runningParsersForFile = new AtomicInteger(parsers.size());
+            SourceManifest.Source source = checkedSources.get(file);
 
+            if (parsers.isEmpty() || source == null) {
+                parallelSources.release();
+                countDownLatch.countDown();
+                continue;
+            }
+
+            // Call all supported parsers on the file.
+            parsers.forEach(parser -> {
                 EventHandler<ActionEvent> finishedListener = (event) -> {
-                    runningParsersForFile.decrementAndGet();
+                    if (runningParsersForFile.decrementAndGet() == 0) {
+                        log.debug("Parsers finished with \"{}\".", file.getName());
 
-                    if (runningParsersForFile.get() == 0) {
-                        countDownLatch.countDown(); // Continue to the next file.
+                        parallelSources.release(); // Continue with the next file.
+                        countDownLatch.countDown();
                     }
                 };
 
                 ParserConfiguration configuration = ParserConfiguration.builder()
                         .currentCase(currentCase)
                         .indexer(indexer)
-                        .loadingStage(loadingStage)
+                        .sourceID(source.getSourceID())
+                        .manifest(manifest)
+                        .progressReporter(progressReporter)
                         .finishedListener(finishedListener).build();
 
                 int expectedFiles = 0;
@@ -103,16 +157,48 @@ public class FileParser {
 
                 parser.parseFile(file, configuration, expectedFiles);
             });
+        }
 
-            try {
-                log.debug("Waiting for parsers to finish with \"{}\"...", file.getName());
-                countDownLatch.await(); // Wait for parsers to finish before continuing.
-            } catch (InterruptedException ex) {
-                log.error(ex.getMessage(), ex);
+        try {
+            log.debug("Waiting for parsers to finish...");
+            countDownLatch.await(); // Wait for parsers to finish with every file.
+        } catch (InterruptedException ex) {
+            log.error(ex.getMessage(), ex);
+        }
+
+        // The manifest may only claim what's committed.
+        indexer.commit();
+        manifest.save();
+
+        checkedSources.values().stream()
+                .filter(source -> source != null && source.isIndexed())
+                .forEach(source -> Checkpoint.delete(currentCase.getName(), source.getSourceID()));
+
+        onParsingFinished.finished(currentCase, indexer, progressReporter);
+    }
+
+    /**
+     * Checks the file against the manifest, deleting the documents of the file's previous version.
+     * Documents of an unfinished attempt are kept, parsers continue from the source's {@link Checkpoint}.
+     *
+     * @return The file's current source, null if the file couldn't be read.
+     */
+    private SourceManifest.Source checkSource(SourceManifest manifest, File file) {
+        try {
+            SourceManifest.Source previous = manifest.getSource(file);
+            SourceManifest.Source current = manifest.check(file);
+
+            if (previous != null && !previous.getSourceID().equals(current.getSourceID())) {
+                indexer.deleteSource(previous.getSourceID());
+                Checkpoint.delete(currentCase.getName(), previous.getSourceID());
             }
-        });
 
-        onParsingFinished.finished(currentCase, indexer, loadingStage);
+            log.debug("Source \"{}\" ({}) is {}.", file.getName(), current.getSourceID(), current.isIndexed() ? "unchanged" : "new or changed");
+            return current;
+        } catch (IOException ex) {
+            log.error("Failed to check source \"{}\": {}", file.getPath(), ex.getMessage(), ex);
+            return null;
+        }
     }
 
     /**
@@ -173,6 +259,6 @@ public class FileParser {
      */
     public interface FinishedListener {
 
-        void finished(Case currentCase, Indexer indexer, LoadingStage loadingStage);
+        void finished(Case currentCase, Indexer indexer, ProgressReporter progressReporter);
     }
 }
@@ -19,7 +19,6 @@ package com.github.email4n6.model.parser;
 
 import com.github.email4n6.model.Case;
 import com.github.email4n6.model.Indexer;
-import com.github.email4n6.view.tabs.home.loading.LoadingStage;
 
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
@@ -45,9 +44,23 @@ public class ParserConfiguration {
     private @Getter Indexer indexer;
 
     /**
-     * The loading stage parsers can show progress with.
+     * The ID of the source being parsed, parsers store this in the "source_id"
+     * field of every document so the source's documents can be deleted.
+     * A source which isn't marked as indexed may still contain documents of an
+     * interrupted attempt, parsers should continue from the source's {@link Checkpoint}.
      */
-    private @Getter LoadingStage loadingStage;
+    private @Getter String sourceID;
+
+    /**
+     * Keeps track of the indexed sources, parsers skip indexing sources which
+     * are already indexed and mark the source as indexed when they're finished.
+     */
+    private @Getter SourceManifest manifest;
+
+    /**
+     * Runs the parser's tasks and shows their progress.
+     */
+    private @Getter ProgressReporter progressReporter;
 
     /**
      * This listener should be called EVERY TIME the parseFile method finishes.
@@ -0,0 +1,186 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model.parser;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * The work of a parser, similar to a JavaFX Task but it doesn't need
+ * the JavaFX toolkit, so parsers can also run without a GUI.
+ * <p>
+ * Progress is kept in lock-free counters which are cheap to update for every message,
+ * a {@link ProgressReporter} samples them at a fixed rate to show the progress.
+ *
+ * @param <V> The type of the result.
+ * @author Marten4n6
+ */
+public abstract class ParserTask<V> implements Runnable {
+
+    private volatile @Getter String title = "";
+    private volatile @Getter String message = "";
+    private final LongAdder workDone = new LongAdder();
+    private final AtomicLong totalWork = new AtomicLong(-1);
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * The pipeline stages of the task, the reporter shows their queue depth and throughput.
+     */
+    private final List<PipelineStage<?, ?>> stages = new CopyOnWriteArrayList<>();
+
+    private volatile @Getter V value;
+    private volatile @Getter Throwable exception;
+
+    /**
+     * Called with the result before {@link #succeeded()}.
+     */
+    private volatile @Setter Consumer<V> succeededListener;
+
+    /**
+     * Does the work of this task.
+     */
+    protected abstract V call() throws Exception;
+
+    /**
+     * Called after the call method returned.
+     */
+    protected void succeeded() {
+    }
+
+    /**
+     * Called after the call method threw an exception.
+     */
+    protected void failed() {
+    }
+
+    @Override
+    public void run() {
+        try {
+            value = call();
+        } catch (Exception ex) {
+            exception = ex;
+            failed();
+            return;
+        }
+
+        if (succeededListener != null) {
+            succeededListener.accept(value);
+        }
+        succeeded();
+    }
+
+    /**
+     * @return The amount of work done.
+     */
+    public long getWorkDone() {
+        return workDone.sum();
+    }
+
+    /**
+     * @return The total amount of work, -1 if it's unknown.
+     */
+    public long getTotalWork() {
+        return totalWork.get();
+    }
+
+    /**
+     * @return The progress between 0 and 1, -1 if it's unknown.
+     */
+    public double getProgress() {
+        long total = totalWork.get();
+
+        return total <= 0 ? -1 : Math.min(1, (double) workDone.sum() / total);
+    }
+
+    /**
+     * @return The amount of items which couldn't be read or indexed, including the failed items of the pipeline stages.
+     * A task with failures doesn't mark it's source as indexed, so the failed parts are indexed again next time.
+     */
+    public long getFailures() {
+        long amount = failures.sum();
+
+        for (PipelineStage<?, ?> stage : stages) {
+            amount += stage.getFailedAmount();
+        }
+        return amount;
+    }
+
+    /**
+     * @return The pipeline stages of the task, empty if it doesn't use a pipeline.
+     */
+    public List<PipelineStage<?, ?>> getStages() {
+        return Collections.unmodifiableList(stages);
+    }
+
+    /**
+     * @return The throughput and queue depth of each pipeline stage, empty if the task doesn't use a pipeline.
+     */
+    public String getPipelineStatus() {
+        StringBuilder status = new StringBuilder();
+
+        for (PipelineStage<?, ?> stage : stages) {
+            if (status.length() > 0) status.append(", ");
+
+            status.append(String.format("%s %.0f/s (%d queued)", stage.getName(), stage.getThroughput(), stage.getQueueDepth()));
+        }
+        return status.toString();
+    }
+
+    protected void updateTitle(String title) {
+        this.title = title;
+    }
+
+    protected void updateMessage(String message) {
+        this.message = message;
+    }
+
+    /**
+     * Counts an item which couldn't be read or indexed.
+     */
+    protected void addFailure() {
+        failures.increment();
+    }
+
+    /**
+     * Adds a pipeline stage which is shown by the reporter.
+     */
+    protected void addStage(PipelineStage<?, ?> stage) {
+        stages.add(stage);
+    }
+
+    /**
+     * Adds to the amount of work done, may be called by multiple threads.
+     */
+    protected void addWorkDone(long amount) {
+        workDone.add(amount);
+    }
+
+    /**
+     * Adds to the total amount of work, which may grow while the work is being done.
+     */
+    protected void addTotalWork(long amount) {
+        totalWork.accumulateAndGet(amount, (total, added) -> Math.max(total, 0) + added);
+    }
+}
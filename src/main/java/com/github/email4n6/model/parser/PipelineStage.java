@@ -0,0 +1,297 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model.parser;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.email4n6.model.Settings;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A stage of a parsing pipeline, stages are connected by bounded queues.
+ * Each stage has it's own threads which take items from the queue, handle
+ * them and pass the results on to the next stage (blocking when it's queue is full).
+ * <p>
+ * An item which fails to be handled is logged and skipped. If a stage dies (an Error or an interrupt)
+ * the whole pipeline fails: blocked puts throw instead of waiting for a queue which is no longer taken from,
+ * the other stages drop their remaining items and {@link #finish()} throws the failure.
+ *
+ * @param <I> The type of items this stage accepts.
+ * @param <O> The type of items this stage passes on to the next stage.
+ * @author Marten4n6
+ */
+@Slf4j
+public class PipelineStage<I, O> {
+
+    /**
+     * Put in the queue once for every thread when no more items will be added.
+     */
+    private static final Object END = new Object();
+
+    /**
+     * How often blocked puts check whether the pipeline failed.
+     */
+    private static final long POLL_MILLIS = 100;
+
+    private final @Getter String name;
+    private final int threads;
+    private final BlockingQueue<Object> queue;
+    private final Handler<I, O> handler;
+    private final PipelineStage<O, ?> nextStage;
+
+    /**
+     * The first failure of any stage, shared by all stages of the pipeline.
+     */
+    private final AtomicReference<PipelineException> failure;
+
+    private final LongAdder processedAmount = new LongAdder();
+    private final LongAdder failedAmount = new LongAdder();
+    private ExecutorService executor;
+    private long startTime;
+
+    /**
+     * @param name       The name of this stage.
+     * @param threads    The amount of threads handling items.
+     * @param queueDepth The maximum amount of items waiting to be handled.
+     * @param handler    Handles the items of this stage.
+     * @param nextStage  The stage which receives the handled items, null if this is the last stage.
+     */
+    public PipelineStage(String name, int threads, int queueDepth, Handler<I, O> handler, PipelineStage<O, ?> nextStage) {
+        this.name = name;
+        this.threads = Math.max(1, threads);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueDepth));
+        this.handler = handler;
+        this.nextStage = nextStage;
+        this.failure = nextStage != null ? nextStage.failure : new AtomicReference<>();
+    }
+
+    /**
+     * Creates a stage which reads it's thread count and queue depth from the case's settings
+     * ("pipeline_[name]_threads" and "pipeline_[name]_queue_depth").
+     */
+    public static <I, O> PipelineStage<I, O> fromSettings(String caseName, String name, int defaultThreads,
+                                                          Handler<I, O> handler, PipelineStage<O, ?> nextStage) {
+        int threads = Settings.getInt(caseName, "pipeline_" + name + "_threads", defaultThreads);
+        int queueDepth = Settings.getInt(caseName, "pipeline_" + name + "_queue_depth", 1000);
+
+        log.debug("Pipeline stage \"{}\" uses {} thread(s) and a queue depth of {}.", name, threads, queueDepth);
+        return new PipelineStage<>(name, threads, queueDepth, handler, nextStage);
+    }
+
+    /**
+     * Starts this stage and all following stages.
+     */
+    public void start() {
+        if (nextStage != null) {
+            nextStage.start();
+        }
+
+        startTime = System.currentTimeMillis();
+        executor = Executors.newFixedThreadPool(threads);
+
+        for (int i = 0; i < threads; i++) {
+            executor.execute(this::work);
+        }
+    }
+
+    /**
+     * Adds an item to this stage, blocks while the queue is full.
+     *
+     * @throws PipelineException If the pipeline failed.
+     */
+    public void put(I item) throws InterruptedException {
+        throwIfFailed();
+
+        while (!queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            throwIfFailed();
+        }
+    }
+
+    /**
+     * Waits for all added items to be handled, then finishes the following stages.
+     * The threads of every stage are stopped when this returns, even if it's interrupted.
+     *
+     * @throws PipelineException If a stage failed.
+     */
+    public void finish() throws InterruptedException {
+        try {
+            for (PipelineStage<?, ?> stage = this; stage != null; stage = stage.nextStage) {
+                stage.awaitHandled();
+            }
+        } catch (InterruptedException ex) {
+            fail(ex);
+            throw ex;
+        } finally {
+            // Only has threads left to stop if a stage failed or waiting was interrupted.
+            for (PipelineStage<?, ?> stage = this; stage != null; stage = stage.nextStage) {
+                stage.executor.shutdownNow();
+            }
+        }
+
+        throwIfFailed();
+    }
+
+    /**
+     * Waits for the items of this stage to be handled, returns early if the pipeline failed.
+     */
+    private void awaitHandled() throws InterruptedException {
+        for (int i = 0; i < threads; i++) {
+            while (!queue.offer(END, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (failure.get() != null) return;
+            }
+        }
+
+        executor.shutdown();
+
+        while (!executor.awaitTermination(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (failure.get() != null) return;
+        }
+
+        log.debug("Pipeline stage finished: {}", this);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void work() {
+        try {
+            Object item;
+
+            while ((item = queue.take()) != END) {
+                if (failure.get() != null) {
+                    continue; // Drop the item, so stages putting into this one don't block.
+                }
+
+                try {
+                    handler.handle((I) item, (output) -> {
+                        if (nextStage != null) {
+                            nextStage.put(output);
+                        }
+                    });
+                } catch (InterruptedException ex) {
+                    throw ex;
+                } catch (Exception ex) {
+                    failedAmount.increment();
+
+                    if (failure.get() == null) {
+                        log.error("Failed to handle item in stage \"{}\": {}", name, ex.getMessage(), ex);
+                    }
+                }
+
+                processedAmount.increment();
+            }
+        } catch (InterruptedException ex) {
+            fail(ex);
+            Thread.currentThread().interrupt();
+        } catch (Throwable ex) {
+            fail(ex);
+        }
+    }
+
+    /**
+     * Makes the whole pipeline fail, only the first failure is kept.
+     */
+    private void fail(Throwable cause) {
+        PipelineException exception = new PipelineException("Pipeline stage \"" + name + "\" failed: " + cause, cause);
+
+        if (failure.compareAndSet(null, exception)) {
+            log.error(exception.getMessage(), cause);
+        }
+    }
+
+    private void throwIfFailed() {
+        PipelineException exception = failure.get();
+
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * @return The amount of items waiting to be handled.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return The amount of items handled so far.
+     */
+    public long getProcessedAmount() {
+        return processedAmount.sum();
+    }
+
+    /**
+     * @return The amount of items which failed to be handled, these items are skipped.
+     */
+    public long getFailedAmount() {
+        return failedAmount.sum();
+    }
+
+    /**
+     * @return The amount of items handled per second.
+     */
+    public double getThroughput() {
+        long elapsed = System.currentTimeMillis() - startTime;
+
+        return elapsed <= 0 ? 0 : processedAmount.sum() * 1000d / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (queued: %d, processed: %d, failed: %d, %.1f/s)", name, getQueueDepth(), getProcessedAmount(), getFailedAmount(), getThroughput());
+    }
+
+    /**
+     * Handles the items of a stage.
+     */
+    public interface Handler<I, O> {
+
+        /**
+         * @param item   The item to handle.
+         * @param output Passes results on to the next stage, may be called any amount of times.
+         */
+        void handle(I item, Output<O> output) throws Exception;
+    }
+
+    /**
+     * Passes items on to the next stage.
+     */
+    public interface Output<O> {
+
+        void put(O item) throws InterruptedException;
+    }
+
+    /**
+     * Thrown when a stage of the pipeline failed, the cause is the failure of the stage.
+     */
+    public static class PipelineException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        PipelineException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model.parser;
+
+import java.util.List;
+
+import com.github.email4n6.view.tabs.tree.TreeObject;
+
+import javafx.scene.control.TreeItem;
+
+/**
+ * Runs the tasks of parsers and shows their progress.
+ * Parsers also pass their tree on to other tabs via the reporter.
+ *
+ * @author Marten4n6
+ */
+public interface ProgressReporter {
+
+    /**
+     * Sets the overall status.
+     */
+    void setStatus(String message);
+
+    /**
+     * Starts the task and shows it's progress.
+     */
+    void addTask(ParserTask<TreeItem<TreeObject>> task);
+
+    /**
+     * @return The trees of all succeeded tasks.
+     */
+    List<TreeItem<TreeObject>> getCreatedTreeItems();
+
+    /**
+     * Called once all tasks are finished.
+     */
+    void shutdown();
+}
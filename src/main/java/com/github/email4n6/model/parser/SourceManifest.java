@@ -0,0 +1,247 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.email4n6.utils.PathUtils;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import lombok.Cleanup;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps track of the case's sources (size, modification time and a sample hash) and whether they are indexed.
+ * A source whose size or modification time changed is indexed again, a PST edited in place often keeps
+ * it's size and only changes pages which a sample doesn't cover.
+ *
+ * @author Marten4n6
+ */
+@Slf4j
+public class SourceManifest {
+
+    /**
+     * The amount of bytes hashed at the start, middle and end of a source.
+     */
+    private static final int SAMPLE_SIZE = 1024 * 1024;
+
+    private final String caseName;
+    private final Map<String, Source> sources;
+
+    private SourceManifest(String caseName, Map<String, Source> sources) {
+        this.caseName = caseName;
+        this.sources = sources;
+    }
+
+    /**
+     * @return The case's manifest, empty if there isn't one yet.
+     */
+    public static SourceManifest load(String caseName) {
+        File manifestFile = PathUtils.getManifestFile(caseName);
+        Map<String, Source> sources = null;
+
+        if (manifestFile.exists()) {
+            try {
+                String json = new String(Files.readAllBytes(manifestFile.toPath()), StandardCharsets.UTF_8);
+
+                sources = new Gson().fromJson(json, new TypeToken<HashMap<String, Source>>() {}.getType());
+            } catch (IOException | JsonParseException ex) {
+                // Without a manifest the index can't be tied to sources, so every source is indexed again.
+                log.error("Failed to read the source manifest, indexing every source again: {}", ex.getMessage(), ex);
+            }
+        }
+        return new SourceManifest(caseName, sources != null ? sources : new HashMap<>());
+    }
+
+    /**
+     * Writes the manifest to the case's directory,
+     * should only be called after the index has been committed.
+     */
+    public synchronized void save() {
+        try {
+            PathUtils.writeAtomically(PathUtils.getManifestFile(caseName), new Gson().toJson(sources).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            log.error(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * @return True if the manifest doesn't contain any sources.
+     */
+    public synchronized boolean isEmpty() {
+        return sources.isEmpty();
+    }
+
+    /**
+     * @return The source of the file as it was when last checked, otherwise null.
+     */
+    public synchronized Source getSource(File file) {
+        return sources.get(file.getAbsolutePath());
+    }
+
+    /**
+     * Updates the file's source, a source whose size or modification time changed gets a new source ID
+     * and is no longer marked as indexed.
+     *
+     * @return The current source of the file.
+     */
+    public synchronized Source check(File file) throws IOException {
+        Source previous = sources.get(file.getAbsolutePath());
+
+        if (previous != null && previous.size == file.length() && previous.lastModified == file.lastModified()) {
+            return previous;
+        }
+
+        String sampleHash = hashSample(file);
+        String sourceID = toHex(digest(file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified() + ":" + sampleHash)).substring(0, 16);
+        Source source = new Source(sourceID, sampleHash, file.length(), file.lastModified(), false);
+
+        sources.put(file.getAbsolutePath(), source);
+        return source;
+    }
+
+    /**
+     * Removes the sources which are no longer part of the case.
+     *
+     * @param paths The paths of the case's current sources.
+     * @return The removed sources.
+     */
+    public synchronized List<Source> removeMissing(Set<String> paths) {
+        List<Source> removed = new ArrayList<>();
+        Set<String> absolutePaths = new HashSet<>();
+
+        paths.forEach(path -> absolutePaths.add(new File(path).getAbsolutePath()));
+
+        for (Iterator<Map.Entry<String, Source>> iterator = sources.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<String, Source> entry = iterator.next();
+
+            if (!absolutePaths.contains(entry.getKey())) {
+                removed.add(entry.getValue());
+                iterator.remove();
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @return True if the file's source is completely indexed.
+     */
+    public synchronized boolean isIndexed(File file) {
+        Source source = sources.get(file.getAbsolutePath());
+
+        return source != null && source.indexed;
+    }
+
+    /**
+     * Marks the file's source as completely indexed.
+     */
+    public synchronized void setIndexed(File file) {
+        Source source = sources.get(file.getAbsolutePath());
+
+        if (source != null) {
+            source.indexed = true;
+        }
+    }
+
+    /**
+     * @return A fast hash of the file's size and it's start, middle and end, not a hash of the whole content.
+     */
+    private static String hashSample(File file) throws IOException {
+        MessageDigest digest = createDigest();
+        @Cleanup RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        long length = randomAccessFile.length();
+        byte[] buffer = new byte[SAMPLE_SIZE];
+
+        digest.update(Long.toString(length).getBytes(StandardCharsets.UTF_8));
+
+        for (long offset : new long[]{0, Math.max(0, length / 2 - SAMPLE_SIZE / 2), Math.max(0, length - SAMPLE_SIZE)}) {
+            randomAccessFile.seek(offset);
+            int read = randomAccessFile.read(buffer);
+
+            if (read > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static byte[] digest(String value) {
+        return createDigest().digest(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * A source file of the case.
+     */
+    @Getter
+    public static class Source {
+
+        /**
+         * Stored in the "source_id" field of every document of this source.
+         */
+        private String sourceID;
+
+        /**
+         * Hash of the start, middle and end of the file, only used to tell sources apart.
+         */
+        private String sampleHash;
+        private long size;
+        private long lastModified;
+        private boolean indexed;
+
+        private Source(String sourceID, String sampleHash, long size, long lastModified, boolean indexed) {
+            this.sourceID = sourceID;
+            this.sampleHash = sampleHash;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.indexed = indexed;
+        }
+    }
+}
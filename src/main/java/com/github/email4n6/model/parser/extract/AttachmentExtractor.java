@@ -0,0 +1,193 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model.parser.extract;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.email4n6.model.Settings;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Extracts the text of attachments with the first extractor which supports them.
+ * Extractors run on their own bounded executor, an attachment which takes longer than
+ * the time limit is given up on, so a slow or hanging extractor can't hold up indexing.
+ *
+ * @author Marten4n6
+ */
+@Slf4j
+public class AttachmentExtractor implements AutoCloseable {
+
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger(0);
+
+    /**
+     * The maximum amount of threads added to replace threads stuck on an attachment.
+     */
+    private static final int MAX_REPLACED_THREADS = 8;
+
+    private final List<TextExtractor> extractors = new ArrayList<>();
+
+    private final int threads;
+    private final @Getter int maxBytes;
+    private final long timeoutMillis;
+    private final ThreadPoolExecutor executor;
+
+    private final LongAdder extractedAmount = new LongAdder();
+    private final LongAdder failedAmount = new LongAdder();
+    private final LongAdder timedOutAmount = new LongAdder();
+    private final LongAdder rejectedAmount = new LongAdder();
+
+    /**
+     * @param threads       The amount of threads extracting text.
+     * @param maxBytes      The maximum size of an attachment, larger attachments are skipped.
+     * @param timeoutMillis The maximum time spent extracting an attachment.
+     */
+    public AttachmentExtractor(int threads, int maxBytes, long timeoutMillis) {
+        this.threads = threads;
+        this.maxBytes = maxBytes;
+        this.timeoutMillis = timeoutMillis;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(threads * 4), runnable -> {
+            Thread thread = new Thread(runnable, "AttachmentExtractor-" + THREAD_NUMBER.incrementAndGet());
+            thread.setDaemon(true); // Extractors may ignore interrupts.
+            return thread;
+        });
+
+        // Add all extractors here...
+        extractors.add(new PlainTextExtractor());
+        extractors.add(new HTMLExtractor());
+        extractors.add(new RTFExtractor());
+        extractors.add(new EmailExtractor());
+    }
+
+    /**
+     * Creates an extractor from the case's settings ("attachment_extraction", "attachment_extraction_threads",
+     * "attachment_extraction_max_kb" and "attachment_extraction_timeout_millis").
+     *
+     * @return The attachment extractor, null if attachment extraction is disabled.
+     */
+    public static AttachmentExtractor fromSettings(String caseName) {
+        if (!Settings.get(caseName, "attachment_extraction").equals("true")) {
+            return null;
+        }
+
+        int threads = Math.max(1, Settings.getInt(caseName, "attachment_extraction_threads", Math.max(1, Runtime.getRuntime().availableProcessors() / 2)));
+        int maxBytes = Math.max(1, Settings.getInt(caseName, "attachment_extraction_max_kb", 4096)) * 1024;
+        int timeoutMillis = Math.max(1, Settings.getInt(caseName, "attachment_extraction_timeout_millis", 10000));
+
+        log.debug("Attachment extraction uses {} thread(s), a maximum size of {} KB and a time limit of {}ms.", threads, maxBytes / 1024, timeoutMillis);
+        return new AttachmentExtractor(threads, maxBytes, timeoutMillis);
+    }
+
+    /**
+     * @return True if an extractor supports the attachment.
+     */
+    public boolean accepts(String fileName, String mimeType) {
+        return getExtractor(fileName.toLowerCase(), mimeType.toLowerCase()) != null;
+    }
+
+    /**
+     * Extracts the text of the attachment, blocks until it's extracted or the time limit is reached.
+     *
+     * @return The text of the attachment, an empty string if it couldn't be extracted.
+     */
+    public String extract(String fileName, String mimeType, byte[] content) {
+        TextExtractor extractor = getExtractor(fileName.toLowerCase(), mimeType.toLowerCase());
+
+        if (extractor == null || content.length > maxBytes) {
+            return "";
+        }
+
+        Future<String> future;
+
+        try {
+            future = executor.submit(() -> extractor.extract(new ByteArrayInputStream(content)));
+        } catch (RejectedExecutionException ex) {
+            // Every thread is busy with attachments which exceeded the time limit.
+            log.warn("Skipping attachment \"{}\", the extractors are busy.", fileName);
+            rejectedAmount.increment();
+            return "";
+        }
+
+        try {
+            String text = future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+
+            extractedAmount.increment();
+            return text == null ? "" : text;
+        } catch (TimeoutException ex) {
+            log.warn("Failed to extract attachment \"{}\" within {}ms, skipping.", fileName, timeoutMillis);
+            future.cancel(true);
+            timedOutAmount.increment();
+            replaceThread();
+        } catch (ExecutionException ex) {
+            log.warn("Failed to extract attachment \"{}\": {}", fileName, ex.getCause().getMessage());
+            failedAmount.increment();
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+        }
+        return "";
+    }
+
+    /**
+     * Stops the extractors, attachments which are still being extracted are abandoned.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        log.debug("Attachment extraction finished: {}", this);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d extracted, %d failed, %d timed out, %d rejected",
+                extractedAmount.sum(), failedAmount.sum(), timedOutAmount.sum(), rejectedAmount.sum());
+    }
+
+    /**
+     * Extractors may ignore being interrupted, so another thread takes over the timed out thread's work.
+     */
+    private synchronized void replaceThread() {
+        executor.purge();
+
+        if (executor.getMaximumPoolSize() < threads + MAX_REPLACED_THREADS) {
+            executor.setMaximumPoolSize(executor.getMaximumPoolSize() + 1);
+            executor.setCorePoolSize(executor.getCorePoolSize() + 1);
+        }
+    }
+
+    private TextExtractor getExtractor(String fileName, String mimeType) {
+        for (TextExtractor extractor : extractors) {
+            if (extractor.accepts(fileName, mimeType)) {
+                return extractor;
+            }
+        }
+        return null;
+    }
+}
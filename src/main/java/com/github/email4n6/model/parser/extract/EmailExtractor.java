@@ -0,0 +1,232 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model.parser.extract;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts the text of attached emails (RFC 822), including attached emails of attached emails.
+ * The subject, addresses and the text parts are extracted, other parts are skipped.
+ *
+ * @author Marten4n6
+ */
+class EmailExtractor implements TextExtractor {
+
+    /**
+     * The maximum depth of nested multiparts and emails.
+     */
+    private static final int MAX_DEPTH = 8;
+
+    private static final String[] TEXT_HEADERS = {"subject", "from", "to", "cc"};
+    private static final Pattern HEADER_END = Pattern.compile("\\r?\\n\\r?\\n");
+    private static final Pattern ENCODED_WORD = Pattern.compile("=\\?([^?]+)\\?([bBqQ])\\?([^?]*)\\?=");
+
+    @Override
+    public boolean accepts(String fileName, String mimeType) {
+        return mimeType.equals("message/rfc822") || fileName.endsWith(".eml");
+    }
+
+    @Override
+    public String extract(InputStream inputStream) throws IOException {
+        StringBuilder text = new StringBuilder();
+
+        // ISO-8859-1 maps every byte to one character, parts are decoded with their own charset later.
+        appendPart(new String(PlainTextExtractor.readAll(inputStream), StandardCharsets.ISO_8859_1), true, 0, text);
+        return text.toString().trim();
+    }
+
+    /**
+     * Appends the text of a MIME part.
+     *
+     * @param isMessage True if the part is an email, so the subject and addresses are added.
+     */
+    private void appendPart(String part, boolean isMessage, int depth, StringBuilder text) {
+        if (depth > MAX_DEPTH) return;
+
+        Map<String, String> headers = new HashMap<>();
+        String body = part;
+
+        if (!part.startsWith("\n") && !part.startsWith("\r\n")) {
+            Matcher headerEnd = HEADER_END.matcher(part);
+            int end = headerEnd.find() ? headerEnd.start() : part.length();
+
+            headers = parseHeaders(part.substring(0, end));
+            body = end == part.length() ? "" : part.substring(headerEnd.end());
+        }
+
+        if (isMessage) {
+            for (String header : TEXT_HEADERS) {
+                if (headers.containsKey(header)) {
+                    text.append(decodeWords(headers.get(header))).append('\n');
+                }
+            }
+        }
+
+        String contentType = headers.getOrDefault("content-type", "text/plain");
+        String mimeType = contentType.split(";", 2)[0].trim().toLowerCase();
+        String encoding = headers.getOrDefault("content-transfer-encoding", "").trim().toLowerCase();
+
+        if (mimeType.startsWith("multipart/")) {
+            String boundary = getParameter(contentType, "boundary");
+
+            if (boundary != null) {
+                appendMultipart(body, boundary, depth, text);
+            }
+        } else if (mimeType.equals("message/rfc822")) {
+            appendPart(new String(decodeBody(body, encoding), StandardCharsets.ISO_8859_1), true, depth + 1, text);
+        } else if (mimeType.equals("text/plain") || mimeType.equals("text/html")) {
+            String content = PlainTextExtractor.decode(decodeBody(body, encoding), getCharset(contentType));
+
+            text.append(mimeType.equals("text/html") ? HTMLExtractor.toText(content) : content).append('\n');
+        }
+    }
+
+    private void appendMultipart(String body, String boundary, int depth, StringBuilder text) {
+        Matcher delimiter = Pattern.compile("(?m)^--" + Pattern.quote(boundary) + "(--)?[ \\t]*\\r?$").matcher(body);
+        int partStart = -1;
+
+        while (delimiter.find()) {
+            if (partStart != -1) {
+                appendPart(stripLeadingNewline(body.substring(partStart, delimiter.start())), false, depth + 1, text);
+            }
+            if (delimiter.group(1) != null) {
+                return; // The closing delimiter, the rest is the epilogue.
+            }
+            partStart = delimiter.end();
+        }
+
+        if (partStart != -1) {
+            // No closing delimiter, the email was truncated.
+            appendPart(stripLeadingNewline(body.substring(partStart)), false, depth + 1, text);
+        }
+    }
+
+    /**
+     * @return The headers by lower case name, folded headers are unfolded.
+     */
+    private Map<String, String> parseHeaders(String headerText) {
+        Map<String, String> headers = new HashMap<>();
+
+        for (String line : headerText.replaceAll("\\r?\\n[ \\t]+", " ").split("\\r?\\n")) {
+            int colon = line.indexOf(':');
+
+            if (colon > 0) {
+                headers.putIfAbsent(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+            }
+        }
+        return headers;
+    }
+
+    private String getParameter(String contentType, String name) {
+        Matcher matcher = Pattern.compile("(?i);\\s*" + name + "\\s*=\\s*(\"([^\"]*)\"|[^;\\s]+)").matcher(contentType);
+
+        if (matcher.find()) {
+            return matcher.group(2) != null ? matcher.group(2) : matcher.group(1);
+        }
+        return null;
+    }
+
+    private Charset getCharset(String contentType) {
+        try {
+            String charset = getParameter(contentType, "charset");
+
+            return charset == null ? null : Charset.forName(charset);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private byte[] decodeBody(String body, String encoding) {
+        try {
+            if (encoding.equals("base64")) {
+                return Base64.getMimeDecoder().decode(body.trim());
+            } else if (encoding.equals("quoted-printable")) {
+                return decodeQuotedPrintable(body, false);
+            }
+        } catch (IllegalArgumentException ex) {
+            // Invalid encoding, use the raw body.
+        }
+        return body.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * @param encodedWord True if underscores represent spaces (Q encoded words).
+     */
+    private byte[] decodeQuotedPrintable(String text, boolean encodedWord) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(text.length());
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+
+            if (text.startsWith("=\r\n", i)) {
+                i += 2; // Soft line break.
+            } else if (text.startsWith("=\n", i)) {
+                i += 1;
+            } else if (c == '=' && i + 2 < text.length() && Character.digit(text.charAt(i + 1), 16) != -1 && Character.digit(text.charAt(i + 2), 16) != -1) {
+                bytes.write(Integer.parseInt(text.substring(i + 1, i + 3), 16));
+                i += 2;
+            } else if (c == '_' && encodedWord) {
+                bytes.write(' ');
+            } else {
+                bytes.write(c);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes the encoded words (RFC 2047) of a header, like "=?UTF-8?B?...?=".
+     */
+    private String decodeWords(String header) {
+        // Headers may also contain raw UTF-8.
+        Matcher matcher = ENCODED_WORD.matcher(PlainTextExtractor.decode(header.getBytes(StandardCharsets.ISO_8859_1), null));
+        StringBuffer decoded = new StringBuffer();
+
+        while (matcher.find()) {
+            String word;
+
+            try {
+                byte[] bytes = matcher.group(2).equalsIgnoreCase("b")
+                        ? Base64.getDecoder().decode(matcher.group(3))
+                        : decodeQuotedPrintable(matcher.group(3), true);
+
+                word = new String(bytes, Charset.forName(matcher.group(1)));
+            } catch (IllegalArgumentException ex) {
+                word = matcher.group();
+            }
+            matcher.appendReplacement(decoded, Matcher.quoteReplacement(word));
+        }
+        matcher.appendTail(decoded);
+        return decoded.toString();
+    }
+
+    private String stripLeadingNewline(String part) {
+        if (part.startsWith("\r\n")) return part.substring(2);
+        if (part.startsWith("\n")) return part.substring(1);
+        return part;
+    }
+}
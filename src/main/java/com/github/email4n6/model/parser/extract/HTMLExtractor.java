@@ -0,0 +1,91 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model.parser.extract;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts the text of HTML attachments, scripts, styles and tags are removed.
+ *
+ * @author Marten4n6
+ */
+class HTMLExtractor implements TextExtractor {
+
+    private static final Pattern INVISIBLE = Pattern.compile("(?is)<(script|style|head)\\b.*?</\\1\\s*>|<!--.*?-->");
+    private static final Pattern TAG = Pattern.compile("(?s)<[^>]*>");
+    private static final Pattern ENTITY = Pattern.compile("&(#x[0-9a-fA-F]+|#[0-9]+|[a-zA-Z]+);");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    @Override
+    public boolean accepts(String fileName, String mimeType) {
+        return mimeType.equals("text/html") || fileName.endsWith(".htm") || fileName.endsWith(".html");
+    }
+
+    @Override
+    public String extract(InputStream inputStream) throws IOException {
+        return toText(PlainTextExtractor.decode(PlainTextExtractor.readAll(inputStream), null));
+    }
+
+    /**
+     * @return The visible text of the HTML.
+     */
+    static String toText(String html) {
+        String text = TAG.matcher(INVISIBLE.matcher(html).replaceAll(" ")).replaceAll(" ");
+        Matcher matcher = ENTITY.matcher(text);
+        StringBuffer decoded = new StringBuffer(text.length());
+
+        while (matcher.find()) {
+            matcher.appendReplacement(decoded, Matcher.quoteReplacement(decodeEntity(matcher.group(1), matcher.group())));
+        }
+        matcher.appendTail(decoded);
+
+        return WHITESPACE.matcher(decoded).replaceAll(" ").trim();
+    }
+
+    private static String decodeEntity(String entity, String original) {
+        try {
+            if (entity.startsWith("#x")) {
+                return new String(Character.toChars(Integer.parseInt(entity.substring(2), 16)));
+            } else if (entity.startsWith("#")) {
+                return new String(Character.toChars(Integer.parseInt(entity.substring(1))));
+            }
+        } catch (IllegalArgumentException ex) {
+            return original;
+        }
+
+        switch (entity) {
+            case "amp":
+                return "&";
+            case "lt":
+                return "<";
+            case "gt":
+                return ">";
+            case "quot":
+                return "\"";
+            case "apos":
+                return "'";
+            case "nbsp":
+                return " ";
+            default:
+                return original;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model.parser.extract;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Extracts the text of plain text attachments.
+ *
+ * @author Marten4n6
+ */
+class PlainTextExtractor implements TextExtractor {
+
+    private static final Set<String> EXTENSIONS = new HashSet<>(Arrays.asList(
+            "txt", "text", "csv", "tsv", "log", "md", "ini", "cfg", "conf", "json", "xml", "vcf", "ics"
+    ));
+
+    @Override
+    public boolean accepts(String fileName, String mimeType) {
+        return mimeType.equals("text/plain") || mimeType.equals("text/csv") || EXTENSIONS.contains(getExtension(fileName));
+    }
+
+    @Override
+    public String extract(InputStream inputStream) throws IOException {
+        return decode(readAll(inputStream), null);
+    }
+
+    /**
+     * @return The extension of the file name, without the dot.
+     */
+    static String getExtension(String fileName) {
+        int index = fileName.lastIndexOf('.');
+
+        return index == -1 ? "" : fileName.substring(index + 1);
+    }
+
+    static byte[] readAll(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Decodes text, the byte order mark wins over the given charset.
+     * Without either, text which isn't valid UTF-8 is assumed to be Windows-1252.
+     *
+     * @param charset The charset of the text, null if unknown.
+     */
+    static String decode(byte[] bytes, Charset charset) {
+        if (bytes.length >= 3 && (bytes[0] & 0xFF) == 0xEF && (bytes[1] & 0xFF) == 0xBB && (bytes[2] & 0xFF) == 0xBF) {
+            return new String(bytes, 3, bytes.length - 3, StandardCharsets.UTF_8);
+        } else if (bytes.length >= 2 && (bytes[0] & 0xFF) == 0xFF && (bytes[1] & 0xFF) == 0xFE) {
+            return new String(bytes, 2, bytes.length - 2, StandardCharsets.UTF_16LE);
+        } else if (bytes.length >= 2 && (bytes[0] & 0xFF) == 0xFE && (bytes[1] & 0xFF) == 0xFF) {
+            return new String(bytes, 2, bytes.length - 2, StandardCharsets.UTF_16BE);
+        } else if (charset != null) {
+            return new String(bytes, charset);
+        }
+
+        try {
+            return StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes)).toString();
+        } catch (CharacterCodingException ex) {
+            return new String(bytes, Charset.forName("windows-1252"));
+        }
+    }
+}
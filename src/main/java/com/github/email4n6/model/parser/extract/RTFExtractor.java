@@ -0,0 +1,51 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model.parser.extract;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.rtf.RTFEditorKit;
+
+/**
+ * Extracts the text of RTF attachments, the same way RTF bodies are extracted.
+ *
+ * @author Marten4n6
+ */
+class RTFExtractor implements TextExtractor {
+
+    @Override
+    public boolean accepts(String fileName, String mimeType) {
+        return mimeType.equals("application/rtf") || mimeType.equals("text/rtf") || fileName.endsWith(".rtf");
+    }
+
+    @Override
+    public String extract(InputStream inputStream) throws IOException {
+        try {
+            RTFEditorKit rtfParser = new RTFEditorKit();
+            Document rtfDocument = rtfParser.createDefaultDocument();
+            rtfParser.read(inputStream, rtfDocument, 0);
+
+            return rtfDocument.getText(0, rtfDocument.getLength());
+        } catch (BadLocationException | NumberFormatException ex) {
+            throw new IOException("Failed to parse RTF: " + ex.getMessage(), ex);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model.parser.extract;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Interface for extracting the text of attachments.
+ *
+ * @author Marten4n6
+ */
+public interface TextExtractor {
+
+    /**
+     * @param fileName The lower case file name of the attachment.
+     * @param mimeType The lower case MIME type of the attachment, may be empty.
+     * @return True if this extractor supports the attachment.
+     */
+    boolean accepts(String fileName, String mimeType);
+
+    /**
+     * @param inputStream The content of the attachment.
+     * @return The text of the attachment.
+     */
+    String extract(InputStream inputStream) throws IOException;
+}
@@ -0,0 +1,148 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model.parser.pst;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.pff.PSTFileContent;
+
+/**
+ * Reads a PST file in fixed size blocks using positional reads,
+ * the most recently used blocks are cached so the many small reads
+ * of a node are served from memory instead of the disk.
+ *
+ * @author Marten4n6
+ */
+class BlockCachedPSTFileContent extends PSTFileContent {
+
+    private final FileChannel channel;
+    private final long length;
+    private final int blockSize;
+    private final Map<Long, byte[]> blocks;
+
+    private long position;
+    private long currentBlockIndex = -1;
+    private byte[] currentBlock;
+
+    /**
+     * @param blockSize   The size of a block in bytes.
+     * @param cacheBlocks The maximum amount of cached blocks.
+     */
+    BlockCachedPSTFileContent(File file, int blockSize, int cacheBlocks) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.length = channel.size();
+        this.blockSize = Math.max(512, blockSize);
+        this.blocks = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                return size() > Math.max(1, cacheBlocks);
+            }
+        };
+    }
+
+    @Override
+    public void seek(long position) {
+        this.position = position;
+    }
+
+    @Override
+    public long getFilePointer() {
+        return position;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position >= length) {
+            return -1;
+        }
+        return readByte() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] target) throws IOException {
+        if (position >= length) {
+            return -1;
+        }
+
+        int total = 0;
+
+        while (total < target.length && position < length) {
+            byte[] block = getBlock(position / blockSize);
+            int offset = (int) (position % blockSize);
+            int amount = Math.min(target.length - total, block.length - offset);
+
+            System.arraycopy(block, offset, target, total, amount);
+            total += amount;
+            position += amount;
+        }
+        return total;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        if (position >= length) {
+            throw new EOFException();
+        }
+
+        byte value = getBlock(position / blockSize)[(int) (position % blockSize)];
+
+        position++;
+        return value;
+    }
+
+    /**
+     * @return The block from the cache, otherwise read from the file.
+     */
+    private byte[] getBlock(long index) throws IOException {
+        if (index == currentBlockIndex) {
+            return currentBlock;
+        }
+
+        byte[] block = blocks.get(index);
+
+        if (block == null) {
+            long offset = index * blockSize;
+            block = new byte[(int) Math.min(blockSize, length - offset)];
+            ByteBuffer buffer = ByteBuffer.wrap(block);
+
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new EOFException();
+                }
+            }
+            blocks.put(index, block);
+        }
+
+        currentBlockIndex = index;
+        currentBlock = block;
+        return block;
+    }
+
+    @Override
+    public void close() throws IOException {
+        blocks.clear();
+        channel.close();
+    }
+}
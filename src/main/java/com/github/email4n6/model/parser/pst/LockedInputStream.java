@@ -0,0 +1,88 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model.parser.pst;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream which holds a lock during every call, so the stream can be read
+ * by any thread without moving the position of other reads of the same file.
+ * The lock is only held per call, reading an attachment doesn't block other reads until it's done.
+ *
+ * @author Marten4n6
+ */
+class LockedInputStream extends FilterInputStream {
+
+    private final Object lock;
+
+    LockedInputStream(InputStream inputStream, Object lock) {
+        super(inputStream);
+        this.lock = lock;
+    }
+
+    @Override
+    public int read() throws IOException {
+        synchronized (lock) {
+            return super.read();
+        }
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        synchronized (lock) {
+            return super.read(buffer, offset, length);
+        }
+    }
+
+    @Override
+    public long skip(long amount) throws IOException {
+        synchronized (lock) {
+            return super.skip(amount);
+        }
+    }
+
+    @Override
+    public int available() throws IOException {
+        synchronized (lock) {
+            return super.available();
+        }
+    }
+
+    @Override
+    public void mark(int readLimit) {
+        synchronized (lock) {
+            super.mark(readLimit);
+        }
+    }
+
+    @Override
+    public void reset() throws IOException {
+        synchronized (lock) {
+            super.reset();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model.parser.pst;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import com.pff.PSTFileContent;
+
+/**
+ * Reads a PST file through memory mapped chunks, seeking is free.
+ * Only suitable for 64-bit hosts since the whole file is mapped.
+ *
+ * @author Marten4n6
+ */
+class MappedPSTFileContent extends PSTFileContent {
+
+    /**
+     * A single mapping can't be larger than 2 GB.
+     */
+    private static final long CHUNK_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] chunks;
+    private final long length;
+    private long position;
+
+    MappedPSTFileContent(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        length = channel.size();
+        chunks = new MappedByteBuffer[(int) ((length + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+
+        for (int i = 0; i < chunks.length; i++) {
+            long offset = i * CHUNK_SIZE;
+
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(CHUNK_SIZE, length - offset));
+        }
+    }
+
+    @Override
+    public void seek(long position) {
+        this.position = position;
+    }
+
+    @Override
+    public long getFilePointer() {
+        return position;
+    }
+
+    @Override
+    public int read() {
+        if (position >= length) {
+            return -1;
+        }
+        return getByte(position++) & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] target) {
+        if (position >= length) {
+            return -1;
+        }
+
+        int total = 0;
+
+        while (total < target.length && position < length) {
+            ByteBuffer chunk = chunks[(int) (position / CHUNK_SIZE)].duplicate();
+            chunk.position((int) (position % CHUNK_SIZE));
+
+            int amount = Math.min(target.length - total, chunk.remaining());
+
+            chunk.get(target, total, amount);
+            total += amount;
+            position += amount;
+        }
+        return total;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        if (position >= length) {
+            throw new EOFException();
+        }
+        return getByte(position++);
+    }
+
+    private byte getByte(long position) {
+        return chunks[(int) (position / CHUNK_SIZE)].get((int) (position % CHUNK_SIZE));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
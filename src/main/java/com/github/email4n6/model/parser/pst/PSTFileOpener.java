@@ -0,0 +1,103 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model.parser.pst;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.github.email4n6.model.Settings;
+import com.pff.PSTException;
+import com.pff.PSTFile;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Static class which opens PST files using the case's I/O mode ("pst_io_mode").
+ *
+ * @author Marten4n6
+ */
+@Slf4j
+final class PSTFileOpener {
+
+    private PSTFileOpener() {
+        throw new AssertionError("Don't.");
+    }
+
+    /**
+     * Opens the PST file using the case's settings.
+     */
+    static PSTFile open(File file, String caseName) throws IOException, PSTException {
+        return open(file,
+                ReadMode.fromName(Settings.get(caseName, "pst_io_mode")),
+                Settings.getInt(caseName, "pst_io_block_size", 64) * 1024,
+                Settings.getInt(caseName, "pst_io_cache_blocks", 256)
+        );
+    }
+
+    /**
+     * @param blockSize   The block size in bytes, only used by the block cache.
+     * @param cacheBlocks The amount of blocks cached per handle, only used by the block cache.
+     */
+    static PSTFile open(File file, ReadMode mode, int blockSize, int cacheBlocks) throws IOException, PSTException {
+        switch (mode) {
+            case MEMORY_MAPPED:
+                if (!"32".equals(System.getProperty("sun.arch.data.model"))) {
+                    return new PSTFile(new MappedPSTFileContent(file));
+                }
+
+                log.warn("Memory mapping requires a 64-bit JVM, using the block cache instead.");
+                return new PSTFile(new BlockCachedPSTFileContent(file, blockSize, cacheBlocks));
+            case BLOCK_CACHE:
+                return new PSTFile(new BlockCachedPSTFileContent(file, blockSize, cacheBlocks));
+            default:
+                return new PSTFile(file);
+        }
+    }
+
+    /**
+     * The ways a PST file can be read.
+     */
+    enum ReadMode {
+
+        /**
+         * java-libpst's own RandomAccessFile.
+         */
+        RANDOM_ACCESS("random-access"),
+        MEMORY_MAPPED("memory-mapped"),
+        BLOCK_CACHE("block-cache");
+
+        private final @Getter String name;
+
+        ReadMode(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return The mode with the name, otherwise random access.
+         */
+        static ReadMode fromName(String name) {
+            for (ReadMode mode : values()) {
+                if (mode.name.equalsIgnoreCase(name)) {
+                    return mode;
+                }
+            }
+            return RANDOM_ACCESS;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model.parser.pst;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.pff.PSTException;
+import com.pff.PSTFolder;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Lightweight copy of a PST folder and it's subfolders,
+ * so the folder hierarchy only has to be read once.
+ *
+ * @author Marten4n6
+ */
+@Slf4j
+@Getter
+class PSTFolderNode {
+
+    private final String displayName;
+    private final String folderID;
+    private final long descriptorNodeID;
+    private final int contentCount;
+    private final int emailCount;
+    private final List<PSTFolderNode> children = new ArrayList<>();
+
+    private PSTFolderNode(PSTFolder folder) {
+        this.displayName = folder.getDisplayName();
+        this.folderID = IDGenerator.getID(folder);
+        this.descriptorNodeID = folder.getDescriptorNodeId();
+        this.contentCount = folder.getContentCount();
+        this.emailCount = getEmailCount(folder);
+    }
+
+    /**
+     * Reads the folder and all it's subfolders.
+     *
+     * @param listener Called for every folder as soon as it's read, before it's subfolders are read.
+     */
+    static PSTFolderNode read(PSTFolder folder, Consumer<PSTFolderNode> listener) {
+        PSTFolderNode node = new PSTFolderNode(folder);
+
+        listener.accept(node);
+
+        if (folder.getNodeType() != 3) {
+            try {
+                for (PSTFolder subFolder : folder.getSubFolders()) {
+                    node.children.add(read(subFolder, listener));
+                }
+            } catch (IOException | PSTException ex) {
+                log.error(ex.getMessage(), ex);
+            }
+        } else {
+            log.debug("Skipping subfolders of \"{}\"...", folder.getDisplayName());
+        }
+        return node;
+    }
+
+    /**
+     * @return The folder's email count, -1 if it can't be read.
+     */
+    private static int getEmailCount(PSTFolder folder) {
+        try {
+            return folder.getEmailCount();
+        } catch (IOException | PSTException ex) {
+            log.error(ex.getMessage(), ex);
+            return -1;
+        }
+    }
+}
@@ -18,20 +18,42 @@
 package com.github.email4n6.model.parser.pst;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.swing.text.BadLocationException;
 import javax.swing.text.rtf.RTFEditorKit;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.util.BytesRef;
 
-import com.github.email4n6.model.Settings;
+import com.github.email4n6.model.ConversationIndex;
+import com.github.email4n6.model.message.factory.IndexMessageFactory;
 import com.github.email4n6.model.parser.ParserConfiguration;
+import com.github.email4n6.model.parser.extract.AttachmentExtractor;
+import com.github.email4n6.view.tabs.search.FacetCounts;
+import com.github.email4n6.view.tabs.search.SearchModel;
 import com.pff.PSTActivity;
 import com.pff.PSTAppointment;
 import com.pff.PSTAttachment;
@@ -46,7 +68,8 @@ import com.pff.PSTTask;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * Indexes PST messages.
+ * Indexes PST messages, in three steps so each can run in it's own pipeline stage:
+ * reading the PSTObject, extracting the body (and attachments) and building the document.
  * If a message is not given an "id" and "folder_id" it will not be retrievable.
  *
  * @author Marten4n6
@@ -54,18 +77,47 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 class PSTIndexer {
 
+    /**
+     * The maximum length of sort and facet values.
+     */
+    private static final int MAX_SORT_VALUE_LENGTH = 256;
+
+    private static final Pattern TAG = Pattern.compile("(?s)<[^>]*>");
+
+    /**
+     * A Message-ID in a header, like "&lt;1234@example.com&gt;".
+     */
+    private static final Pattern MESSAGE_ID = Pattern.compile("<([^<>\\s]+)>");
+
+    /**
+     * The value of the (unfolded) headers which link a message into it's conversation.
+     */
+    private static final Pattern MESSAGE_ID_HEADER = Pattern.compile("(?im)^Message-ID:(.*)$");
+    private static final Pattern IN_REPLY_TO_HEADER = Pattern.compile("(?im)^In-Reply-To:(.*)$");
+    private static final Pattern REFERENCES_HEADER = Pattern.compile("(?im)^References:(.*)$");
+
     private ParserConfiguration configuration;
-    private SimpleDateFormat DATE_FORMAT;
+
+    /**
+     * Null if attachment text extraction is disabled.
+     */
+    private AttachmentExtractor attachmentExtractor;
+
+    private ConversationIndex conversationIndex;
 
     PSTIndexer(ParserConfiguration configuration) {
         this.configuration = configuration;
-        this.DATE_FORMAT = new SimpleDateFormat(Settings.get(configuration.getCurrentCase().getName(), "date_format"));
+        this.conversationIndex = ConversationIndex.get(configuration.getCurrentCase().getName());
+        this.attachmentExtractor = AttachmentExtractor.fromSettings(configuration.getCurrentCase().getName());
     }
 
     /**
-     * Indexes the PSTObject, automatically detects it's message type.
+     * Reads the PSTObject, automatically detects it's message type.
+     * This is the only step which accesses the PSTFile.
+     *
+     * @return The read item, null if this message type isn't indexed.
      */
-    void index(PSTObject pstObject, String pstFileID, String folderID) {
+    PSTItem read(PSTObject pstObject, String pstFileID, String folderID) {
         // Support types:
         // - PSTActivity represents Journal entries
         // - PSTAppointment is for Calendar items
@@ -74,218 +126,554 @@ class PSTIndexer {
         // - PSTTask represents Task items
         // - PSTMessage is a regular message
         if (pstObject instanceof PSTActivity) {
-            indexActivity((PSTActivity)pstObject, pstFileID, folderID);
+            return readActivity((PSTActivity)pstObject, pstFileID, folderID);
         } else if (pstObject instanceof PSTAppointment) {
-            indexAppointment((PSTAppointment)pstObject, pstFileID, folderID);
+            return readAppointment((PSTAppointment)pstObject, pstFileID, folderID);
         } else if (pstObject instanceof PSTContact) {
-            indexContact((PSTContact)pstObject, pstFileID, folderID);
+            return readContact((PSTContact)pstObject, pstFileID, folderID);
         } else if (pstObject instanceof PSTRss) {
-            indexRSS((PSTRss)pstObject, pstFileID, folderID);
+            return readRSS((PSTRss)pstObject, pstFileID, folderID);
         } else if (pstObject instanceof PSTTask) {
-            indexTask((PSTTask)pstObject, pstFileID, folderID);
+            return readTask((PSTTask)pstObject, pstFileID, folderID);
         } else {
             // Assume this is a regular message.
-            indexMessage((PSTMessage)pstObject, pstFileID, folderID);
+            return readMessage((PSTMessage)pstObject, pstFileID, folderID);
         }
     }
 
-    private void indexActivity(PSTActivity activity, String pstFileID, String folderID) {
+    private PSTItem readActivity(PSTActivity activity, String pstFileID, String folderID) {
         log.info("This message is an activity!");
+        return null;
     }
 
-    private void indexAppointment(PSTAppointment appointment, String pstFileID, String folderID) {
-        Document document = new Document();
-        StringBuilder searchableText = new StringBuilder();
-
+    private PSTItem readAppointment(PSTAppointment appointment, String pstFileID, String folderID) {
         // Fields which uniquely identify this item.
-        addStringField(document, "id", IDGenerator.getID(appointment, pstFileID, folderID));
-        addStringField(document, "folder_id", folderID);
+        PSTItem item = new PSTItem(IDGenerator.getID(appointment, pstFileID, folderID), folderID);
+        readRow(appointment, item, "appointment");
 
         // Common
-        addTextField(document, "subject", appointment.getSubject(), searchableText);
-        addTextField(document, "headers", appointment.getTransportMessageHeaders(), searchableText);
-        addTextField(document, "body", getBody(appointment), searchableText);
+        item.addText("subject", appointment.getSubject());
+        item.addText("headers", appointment.getTransportMessageHeaders());
+        readBody(appointment, item);
 
         // Appointment related
-        addTextField(document, "all_attendees", appointment.getAllAttendees(), searchableText);
-        addTextField(document, "location", appointment.getLocation(), searchableText);
-        addDateTextField(document, "start_time", appointment.getStartTime(), searchableText);
-        addDateTextField(document, "end_time", appointment.getEndTime(), searchableText);
+        item.addText("all_attendees", appointment.getAllAttendees());
+        item.addText("location", appointment.getLocation());
+        item.addDate("start_time", appointment.getStartTime());
+        item.addDate("end_time", appointment.getEndTime());
 
         // Online meeting properties
         if (appointment.isOnlineMeeting()) {
-            addTextField(document, "net_meeting_server", appointment.getNetMeetingServer(), searchableText);
-            addTextField(document, "net_organizer_alias", appointment.getNetMeetingOrganizerAlias(), searchableText);
-            addTextField(document, "net_document_pathname", appointment.getNetMeetingDocumentPathName(), searchableText);
-            addTextField(document, "net_show_url", appointment.getNetShowURL(), searchableText);
-        }
-
-        addSearchableField(document, searchableText);
-
-        try {
-            configuration.getIndexer().getIndexWriter().addDocument(document);
-        } catch (IOException ex) {
-            log.error(ex.getMessage(), ex);
+            item.addText("net_meeting_server", appointment.getNetMeetingServer());
+            item.addText("net_organizer_alias", appointment.getNetMeetingOrganizerAlias());
+            item.addText("net_document_pathname", appointment.getNetMeetingDocumentPathName());
+            item.addText("net_show_url", appointment.getNetShowURL());
         }
-
+        return item;
     }
 
-    private void indexContact(PSTContact contact, String pstFileID, String folderID) {
-        Document document = new Document();
-        StringBuilder searchableText = new StringBuilder();
-
+    private PSTItem readContact(PSTContact contact, String pstFileID, String folderID) {
         // Fields which uniquely identify this item.
-        addStringField(document, "id", IDGenerator.getID(contact, pstFileID, folderID));
-        addStringField(document, "folder_id", folderID);
+        PSTItem item = new PSTItem(IDGenerator.getID(contact, pstFileID, folderID), folderID);
+        readRow(contact, item, "contact");
 
         // Common
-        addTextField(document, "subject", contact.getSubject(), searchableText);
+        item.addText("subject", contact.getSubject());
 
         // Contact related
-        addTextField(document, "given_name", contact.getGivenName(), searchableText);
-        addTextField(document, "surname", contact.getSurname(), searchableText);
-        addTextField(document, "smtp_address", contact.getSMTPAddress(), searchableText);
-        addTextField(document, "mobile_phone_number", contact.getMobileTelephoneNumber(), searchableText);
-        addTextField(document, "other_phone_number", contact.getOtherTelephoneNumber(), searchableText);
-
-        addSearchableField(document, searchableText);
-
-        try {
-            configuration.getIndexer().getIndexWriter().addDocument(document);
-        } catch (IOException ex) {
-            log.error(ex.getMessage(), ex);
-        }
+        item.addText("given_name", contact.getGivenName());
+        item.addText("surname", contact.getSurname());
+        item.addText("smtp_address", contact.getSMTPAddress());
+        item.addText("mobile_phone_number", contact.getMobileTelephoneNumber());
+        item.addText("other_phone_number", contact.getOtherTelephoneNumber());
+        return item;
     }
 
-    private void indexRSS(PSTRss rss, String pstFileID, String folderID) {
-        Document document = new Document();
-        StringBuilder searchableText = new StringBuilder();
-
+    private PSTItem readRSS(PSTRss rss, String pstFileID, String folderID) {
         // Fields which uniquely identify this item.
-        addStringField(document, "id", IDGenerator.getID(rss, pstFileID, folderID));
-        addStringField(document, "folder_id", folderID);
+        PSTItem item = new PSTItem(IDGenerator.getID(rss, pstFileID, folderID), folderID);
+        readRow(rss, item, "rss");
 
         // Common
-        addTextField(document, "subject", rss.getSubject(), searchableText);
-        addTextField(document, "headers", rss.getTransportMessageHeaders(), searchableText);
-        addTextField(document, "body", getBody(rss), searchableText);
-
-        addSearchableField(document, searchableText);
-
-        try {
-            configuration.getIndexer().getIndexWriter().addDocument(document);
-        } catch (IOException ex) {
-            log.error(ex.getMessage(), ex);
-        }
+        item.addText("subject", rss.getSubject());
+        item.addText("headers", rss.getTransportMessageHeaders());
+        readBody(rss, item);
+        return item;
     }
 
-    private void indexTask(PSTTask task, String pstFileID, String folderID) {
-        Document document = new Document();
-        StringBuilder searchableText = new StringBuilder();
-
+    private PSTItem readTask(PSTTask task, String pstFileID, String folderID) {
         // Fields which uniquely identify this item.
-        addStringField(document, "id", IDGenerator.getID(task, pstFileID, folderID));
-        addStringField(document, "folder_id", folderID);
+        PSTItem item = new PSTItem(IDGenerator.getID(task, pstFileID, folderID), folderID);
+        readRow(task, item, "task");
 
         // Common
-        addTextField(document, "subject", task.getSubject(), searchableText);
-        addTextField(document, "body", getBody(task), searchableText);
+        item.addText("subject", task.getSubject());
+        readBody(task, item);
 
         // Task related
-        addTextField(document, "task_owner", task.getTaskOwner(), searchableText);
-        addTextField(document, "task_assigner", task.getTaskAssigner(), searchableText);
-
-        addSearchableField(document, searchableText);
-
-        try {
-            configuration.getIndexer().getIndexWriter().addDocument(document);
-        } catch (IOException ex) {
-            log.error(ex.getMessage(), ex);
-        }
+        item.addText("task_owner", task.getTaskOwner());
+        item.addText("task_assigner", task.getTaskAssigner());
+        return item;
     }
 
-    private void indexMessage(PSTMessage message, String pstFileID, String folderID) {
-        Document document = new Document();
-        StringBuilder searchableText = new StringBuilder();
-
+    private PSTItem readMessage(PSTMessage message, String pstFileID, String folderID) {
         // Fields which uniquely identify this item.
-        addStringField(document, "id", IDGenerator.getID(message, pstFileID, folderID));
-        addStringField(document, "folder_id", folderID);
+        PSTItem item = new PSTItem(IDGenerator.getID(message, pstFileID, folderID), folderID);
+        readRow(message, item, "message");
 
         // Message related
-        addTextField(document, "subject", message.getSubject(), searchableText);
-        addTextField(document, "body", getBody(message), searchableText);
+        item.addText("subject", message.getSubject());
+        readBody(message, item);
 
         try {
+            StringBuilder to = new StringBuilder();
+
             for (int i = 0; i < message.getNumberOfRecipients(); i++) {
                 PSTRecipient recipient = message.getRecipient(i);
 
-                addTextField(document, "to", recipient.getSmtpAddress(), searchableText);
+                item.addText("to", recipient.getSmtpAddress());
+                to.append(recipient.getSmtpAddress());
+
+                if (i != message.getNumberOfRecipients() - 1) {
+                    to.append(", ");
+                }
             }
+            item.setTo(to.toString());
         } catch (PSTException | IOException ex) {
             log.error(ex.getMessage(), ex);
         }
 
-        addTextField(document, "cc", message.getDisplayCC(), searchableText);
-        addTextField(document, "headers", message.getTransportMessageHeaders(), searchableText);
-        addDateTextField(document, "received_time", message.getMessageDeliveryTime(), searchableText);
-        addDateTextField(document, "submit_time", message.getClientSubmitTime(), searchableText);
+        item.setCc(message.getDisplayCC());
+
+        if (message.getSenderEmailAddress().contains("@") && !message.getSenderAddrtype().equals("EX")) {
+            item.setFrom(message.getSenderEmailAddress());
+        } else {
+            // The sender's email contains /O=EXCHANGELABS/OU=EXCHANGE ADMINISTRATIVE GROUP
+            // so prefer the sender's name instead.
+            item.setFrom(message.getSenderName());
+        }
+
+        item.addText("cc", message.getDisplayCC());
+        item.addText("headers", message.getTransportMessageHeaders());
+        item.addDate("received_time", message.getMessageDeliveryTime());
+        item.addDate("submit_time", message.getClientSubmitTime());
 
         if (message.hasAttachments()) {
             for (int i = 0; i < message.getNumberOfAttachments(); i++) {
                 try {
                     PSTAttachment attachment = message.getAttachment(i);
 
-                    addTextField(document, "attachment_name", attachment.getLongFilename(), searchableText);
+                    item.addText("attachment_name", attachment.getLongFilename());
+
+                    if (attachmentExtractor != null) {
+                        readAttachment(attachment, item);
+                    }
                 } catch (PSTException | IOException ex) {
                     log.error(ex.getMessage(), ex);
                 }
             }
         }
+        return item;
+    }
 
-        addSearchableField(document, searchableText);
+    /**
+     * Reads the content of the attachment if it's text can be extracted, attached
+     * Outlook messages are converted to an RFC 822 email for the email extractor.
+     */
+    private void readAttachment(PSTAttachment attachment, PSTItem item) throws PSTException, IOException {
+        String fileName = attachment.getLongFilename().isEmpty() ? attachment.getFilename() : attachment.getLongFilename();
 
-        try {
-            configuration.getIndexer().getIndexWriter().addDocument(document);
-        } catch (IOException ex) {
-            log.error(ex.getMessage(), ex);
+        if (attachment.getAttachMethod() == PSTAttachment.ATTACHMENT_METHOD_EMBEDDED) {
+            PSTMessage embeddedMessage = attachment.getEmbeddedPSTMessage();
+
+            if (embeddedMessage != null) {
+                byte[] content = toEmail(embeddedMessage);
+
+                if (content.length <= attachmentExtractor.getMaxBytes()) {
+                    item.addAttachment(fileName, "message/rfc822", content);
+                }
+            }
+            return;
         }
-    }
 
-    private String getBody(PSTMessage message) {
-        try {
-            // A body can be either RTF, HTML or plaintext.
-            String body = "";
+        if (!attachmentExtractor.accepts(fileName, attachment.getMimeTag())) {
+            return;
+        }
+        if (attachment.getFilesize() > attachmentExtractor.getMaxBytes()) {
+            log.debug("Skipping text extraction of \"{}\", it's larger than {} KB.", fileName, attachmentExtractor.getMaxBytes() / 1024);
+            return;
+        }
 
-            if (!message.getRTFBody().isEmpty()) {
-                try {
-                    RTFEditorKit rtfParser = new RTFEditorKit();
-                    javax.swing.text.Document rtfDocument = rtfParser.createDefaultDocument();
-                    rtfParser.read(new ByteArrayInputStream(message.getRTFBody().getBytes()), rtfDocument, 0);
+        try (InputStream inputStream = attachment.getFileInputStream()) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream(Math.max(0, attachment.getFilesize()));
+            byte[] buffer = new byte[8192];
+            int read;
+
+            while ((read = inputStream.read(buffer)) > 0) {
+                content.write(buffer, 0, read);
 
-                    body = rtfDocument.getText(0, rtfDocument.getLength());
-                } catch (BadLocationException | NumberFormatException ex) {
-                    log.error("Failed to parse RTF: {}", ex.getMessage());
+                if (content.size() > attachmentExtractor.getMaxBytes()) {
+                    log.debug("Skipping text extraction of \"{}\", it's larger than {} KB.", fileName, attachmentExtractor.getMaxBytes() / 1024);
+                    return;
                 }
-            } else if (!message.getBodyHTML().isEmpty()) {
-                body = message.getBodyHTML();
-            } else if (!message.getBody().isEmpty()) {
-                body = message.getBody();
             }
+            item.addAttachment(fileName, attachment.getMimeTag(), content.toByteArray());
+        }
+    }
+
+    /**
+     * @return The subject, addresses and body of the message as an RFC 822 email.
+     */
+    private byte[] toEmail(PSTMessage message) {
+        boolean isHTML = message.getBody().isEmpty() && !message.getBodyHTML().isEmpty();
+        StringBuilder email = new StringBuilder();
+
+        email.append("Subject: ").append(message.getSubject()).append("\r\n");
+        email.append("From: ").append(message.getSenderName()).append(" <").append(message.getSenderEmailAddress()).append(">\r\n");
+        email.append("To: ").append(message.getDisplayTo()).append("\r\n");
+        email.append("Cc: ").append(message.getDisplayCC()).append("\r\n");
+        email.append("Content-Type: ").append(isHTML ? "text/html" : "text/plain").append("; charset=UTF-8\r\n\r\n");
+        email.append(isHTML ? message.getBodyHTML() : message.getBody());
+
+        return email.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the fields shown in the message table.
+     */
+    private void readRow(PSTMessage message, PSTItem item, String type) {
+        item.setType(type);
+        item.setSubject(message.getSubject());
+        item.setSize(message.getMessageSize());
+
+        if (!(message instanceof PSTContact)) {
+            item.setReceivedDate(message.getMessageDeliveryTime());
+            item.setMessageID(message.getInternetMessageId());
+            item.setSubmitDate(message.getClientSubmitTime());
+            item.setInReplyTo(message.getInReplyToId());
+        }
+    }
 
-            return body;
+    /**
+     * Reads the raw body, a body can be either RTF, HTML or plaintext.
+     */
+    private void readBody(PSTMessage message, PSTItem item) {
+        try {
+            String rtfBody = message.getRTFBody();
+            String htmlBody = rtfBody.isEmpty() ? message.getBodyHTML() : "";
+            String plainBody = rtfBody.isEmpty() && htmlBody.isEmpty() ? message.getBody() : "";
+
+            item.addBody(rtfBody, htmlBody, plainBody);
         } catch (PSTException | IOException ex) {
             log.error("Failed to get RTF body: {}", ex.getMessage(), ex);
-            return "";
+            item.addBody("", "", "");
         }
     }
 
+    /**
+     * Converts the raw body of the item to text.
+     */
+    void extractBody(PSTItem item) {
+        String body = "";
+
+        if (!item.getRtfBody().isEmpty()) {
+            try {
+                RTFEditorKit rtfParser = new RTFEditorKit();
+                javax.swing.text.Document rtfDocument = rtfParser.createDefaultDocument();
+                rtfParser.read(new ByteArrayInputStream(item.getRtfBody().getBytes()), rtfDocument, 0);
+
+                body = rtfDocument.getText(0, rtfDocument.getLength());
+            } catch (BadLocationException | NumberFormatException | IOException ex) {
+                log.error("Failed to parse RTF: {}", ex.getMessage());
+            }
+        } else if (!item.getHtmlBody().isEmpty()) {
+            body = item.getHtmlBody();
+        } else if (!item.getPlainBody().isEmpty()) {
+            body = item.getPlainBody();
+        }
+
+        item.setBody(body);
+        item.setRtfBody("");
+        item.setHtmlBody("");
+        item.setPlainBody("");
+    }
+
+    /**
+     * Extracts the text of the item's attachments, then drops their content.
+     */
+    void extractAttachments(PSTItem item) {
+        if (attachmentExtractor == null || item.getAttachments().isEmpty()) {
+            return;
+        }
+
+        StringBuilder attachmentText = new StringBuilder();
+
+        for (PSTItem.AttachmentContent attachment : item.getAttachments()) {
+            String text = attachmentExtractor.extract(attachment.getFileName(), attachment.getMimeType(), attachment.getContent());
+
+            if (!text.isEmpty()) {
+                attachmentText.append(text).append("\n");
+            }
+        }
+
+        item.setAttachmentText(attachmentText.toString());
+        item.getAttachments().clear();
+    }
+
+    /**
+     * Stops the attachment extractor.
+     */
+    void close() {
+        if (attachmentExtractor != null) {
+            attachmentExtractor.close();
+        }
+    }
+
+    /**
+     * @return The document of the item, ready to be written to the index.
+     */
+    Document buildDocument(PSTItem item) {
+        Document document = new Document();
+        StringBuilder searchableText = new StringBuilder();
+
+        addStringField(document, "id", item.getId());
+        // Lets folder listings read the IDs without loading the stored fields.
+        document.add(new SortedDocValuesField("id", new BytesRef(item.getId())));
+        addStringField(document, "folder_id", item.getFolderID());
+        addStringField(document, "source_id", configuration.getSourceID());
+        addRowFields(document, item);
+        addLongField(document, "size", item.getSize());
+        addFacetFields(document, item);
+        addFingerprintField(document, item);
+        addConversationFields(document, item);
+
+        for (PSTItem.ItemField field : item.getFields()) {
+            if (field.getKey().equals("body")) {
+                addTextField(document, "body", item.getBody(), searchableText);
+            } else if (field.getText() != null) {
+                addTextField(document, field.getKey(), field.getText(), searchableText);
+            } else {
+                addDateField(document, field.getKey(), field.getDate());
+            }
+        }
+
+        addTextField(document, "attachment_text", item.getAttachmentText(), searchableText);
+
+        addSearchableField(document, searchableText);
+        return document;
+    }
+
+    /**
+     * Writes the document to the index.
+     */
+    void write(Document document) throws IOException {
+        configuration.getIndexer().getIndexWriter().addDocument(document);
+    }
+
     private void addStringField(Document document, String key, String value) {
         if (!value.isEmpty()) {
             document.add(new StringField(key, value, Field.Store.YES));
         }
     }
 
+    /**
+     * Stores the fields of the message table row, these aren't searchable.
+     * The sortable columns also get doc values, so the table can be sorted without loading the rows.
+     */
+    private void addRowFields(Document document, PSTItem item) {
+        document.add(new StoredField(IndexMessageFactory.ROW_TYPE, item.getType()));
+        addStoredField(document, IndexMessageFactory.ROW_SUBJECT, item.getSubject());
+        addStoredField(document, IndexMessageFactory.ROW_FROM, item.getFrom());
+        addStoredField(document, IndexMessageFactory.ROW_TO, item.getTo());
+        addStoredField(document, IndexMessageFactory.ROW_CC, item.getCc());
+        document.add(new StoredField(IndexMessageFactory.ROW_SIZE, item.getSize()));
+        document.add(new NumericDocValuesField(IndexMessageFactory.ROW_SIZE, item.getSize()));
+
+        addSortedField(document, IndexMessageFactory.ROW_SUBJECT, item.getSubject());
+        addSortedField(document, IndexMessageFactory.ROW_FROM, item.getFrom());
+
+        if (item.getReceivedDate() != null) {
+            document.add(new StoredField(IndexMessageFactory.ROW_RECEIVED, item.getReceivedDate().getTime()));
+            document.add(new NumericDocValuesField(IndexMessageFactory.ROW_RECEIVED, item.getReceivedDate().getTime()));
+        }
+    }
+
+    /**
+     * Adds a case insensitive sort value.
+     */
+    private void addSortedField(Document document, String key, String value) {
+        if (value != null && !value.isEmpty()) {
+            BytesRef sortValue = new BytesRef(value.toLowerCase());
+
+            // Doc values are limited in size, only the start of the value matters for sorting.
+            if (sortValue.length > MAX_SORT_VALUE_LENGTH) {
+                sortValue.length = MAX_SORT_VALUE_LENGTH;
+            }
+            document.add(new SortedDocValuesField(key, sortValue));
+        }
+    }
+
+    /**
+     * Adds the values which search results are counted by.
+     */
+    private void addFacetFields(Document document, PSTItem item) {
+        addFacetField(document, FacetCounts.TYPE, item.getType());
+        addFacetField(document, FacetCounts.FOLDER, item.getFolderID());
+
+        if (item.getFrom() != null) {
+            addFacetField(document, FacetCounts.SENDER, item.getFrom().toLowerCase());
+        }
+
+        if (item.getTo() != null) {
+            Set<String> domains = new HashSet<>();
+
+            for (String recipient : item.getTo().split(",")) {
+                if (recipient.contains("@")) {
+                    domains.add(recipient.substring(recipient.lastIndexOf('@') + 1).trim().toLowerCase());
+                }
+            }
+            domains.forEach(domain -> addFacetField(document, FacetCounts.RECIPIENT_DOMAIN, domain));
+        }
+
+        if (item.getReceivedDate() != null) {
+            addFacetField(document, FacetCounts.MONTH, YearMonth.from(item.getReceivedDate().toInstant().atZone(ZoneId.systemDefault())).toString());
+        }
+    }
+
+    private void addFacetField(Document document, String key, String value) {
+        if (value != null && !value.isEmpty()) {
+            if (value.length() > MAX_SORT_VALUE_LENGTH) {
+                value = value.substring(0, MAX_SORT_VALUE_LENGTH);
+            }
+            document.add(new StringField(key, value, Field.Store.NO));
+            document.add(new SortedSetDocValuesField(key, new BytesRef(value)));
+        }
+    }
+
+    /**
+     * Adds the fingerprint which identifies copies of the same message in other sources,
+     * like the sender's and recipient's mailbox or an archive. Uses the Message-ID and submit time,
+     * or the normalized body, sender and submit time of messages without a Message-ID.
+     * Items without either (like contacts) aren't given a fingerprint, so they're never collapsed.
+     */
+    private void addFingerprintField(Document document, PSTItem item) {
+        String messageID = item.getMessageID() == null ? "" : item.getMessageID().trim().toLowerCase().replaceAll("^<|>$", "");
+        long submitTime = item.getSubmitDate() == null ? 0 : item.getSubmitDate().getTime() / 1000;
+        String key;
+
+        if (!messageID.isEmpty()) {
+            key = "message-id|" + messageID + "|" + submitTime;
+        } else if (submitTime != 0) {
+            String normalizedBody = TAG.matcher(item.getBody()).replaceAll(" ").toLowerCase().replaceAll("[^\\p{L}\\p{N}]+", "");
+
+            key = "body|" + item.getType() + "|" + sha256(normalizedBody) + "|" + (item.getFrom() == null ? "" : item.getFrom().trim().toLowerCase()) + "|" + submitTime;
+        } else {
+            return;
+        }
+
+        String fingerprint = sha256(key);
+
+        document.add(new StringField(SearchModel.FINGERPRINT, fingerprint, Field.Store.NO));
+        document.add(new SortedDocValuesField(SearchModel.FINGERPRINT, new BytesRef(fingerprint)));
+    }
+
+    /**
+     * Adds the Message-ID, In-Reply-To and References of the transport headers and links the
+     * message into it's conversation. Messages without headers (like sent items) use the Message-ID
+     * and In-Reply-To properties instead, messages without a Message-ID are keyed by their own ID.
+     */
+    private void addConversationFields(Document document, PSTItem item) {
+        String headers = item.getText("headers").replaceAll("\\r?\\n[ \\t]+", " "); // Unfold
+        List<String> messageIDs = parseMessageIDs(getHeader(headers, MESSAGE_ID_HEADER), item.getMessageID());
+        List<String> inReplyTo = parseMessageIDs(getHeader(headers, IN_REPLY_TO_HEADER), item.getInReplyTo());
+        List<String> references = parseMessageIDs(getHeader(headers, REFERENCES_HEADER), "");
+
+        Set<Long> referencedKeys = new HashSet<>();
+        long key;
+
+        if (!messageIDs.isEmpty()) {
+            key = ConversationIndex.getKey(messageIDs.get(0));
+            addIDField(document, IndexMessageFactory.MESSAGE_ID, messageIDs.get(0));
+        } else {
+            key = ConversationIndex.getKey("id:" + item.getId());
+        }
+
+        if (!inReplyTo.isEmpty()) {
+            referencedKeys.add(ConversationIndex.getKey(inReplyTo.get(0)));
+            addIDField(document, IndexMessageFactory.IN_REPLY_TO, inReplyTo.get(0));
+        }
+
+        for (String reference : references) {
+            referencedKeys.add(ConversationIndex.getKey(reference));
+
+            if (reference.length() <= MAX_SORT_VALUE_LENGTH) {
+                document.add(new StringField(IndexMessageFactory.REFERENCES, reference, Field.Store.YES));
+                document.add(new SortedSetDocValuesField(IndexMessageFactory.REFERENCES, new BytesRef(reference)));
+            }
+        }
+
+        conversationIndex.add(configuration.getSourceID(), key, referencedKeys);
+        document.add(new StringField(IndexMessageFactory.CONVERSATION_KEY, ConversationIndex.toTerm(key), Field.Store.YES));
+    }
+
+    /**
+     * @return The value of the first matching header, empty if there is none.
+     */
+    private static String getHeader(String headers, Pattern header) {
+        Matcher matcher = header.matcher(headers);
+
+        return matcher.find() ? matcher.group(1) : "";
+    }
+
+    /**
+     * @param fallback Used if the header doesn't contain a Message-ID, may be a Message-ID without angle brackets.
+     * @return The normalized (lower case, without angle brackets) Message-IDs of the header.
+     */
+    private static List<String> parseMessageIDs(String header, String fallback) {
+        List<String> messageIDs = new ArrayList<>();
+        Matcher matcher = MESSAGE_ID.matcher(header);
+
+        while (matcher.find()) {
+            messageIDs.add(matcher.group(1).toLowerCase());
+        }
+
+        if (messageIDs.isEmpty() && fallback != null) {
+            String normalized = fallback.trim().toLowerCase().replaceAll("^<|>$", "");
+
+            if (!normalized.isEmpty() && !normalized.contains(" ")) {
+                messageIDs.add(normalized);
+            }
+        }
+        return messageIDs;
+    }
+
+    private void addIDField(Document document, String key, String value) {
+        if (value.length() <= MAX_SORT_VALUE_LENGTH) {
+            document.add(new StringField(key, value, Field.Store.YES));
+            document.add(new SortedDocValuesField(key, new BytesRef(value)));
+        }
+    }
+
+    private static String sha256(String text) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private void addStoredField(Document document, String key, String value) {
+        if (value != null && !value.isEmpty()) {
+            document.add(new StoredField(key, value));
+        }
+    }
+
     private void addTextField(Document document, String key, String value, StringBuilder searchableText) {
         if (!value.isEmpty()) {
             document.add(new TextField(key, value, Field.Store.NO));
@@ -293,13 +681,20 @@ class PSTIndexer {
         }
     }
 
-    private void addDateTextField(Document document, String key, Date value, StringBuilder searchableText) {
+    /**
+     * Indexes the date as a point, so it can be searched by range independent of the date format.
+     */
+    private void addDateField(Document document, String key, Date value) {
         if (value != null) {
-            document.add(new TextField(key, DATE_FORMAT.format(value), Field.Store.NO));
-            searchableText.append(value).append(" ");
+            addLongField(document, key, value.getTime());
         }
     }
 
+    private void addLongField(Document document, String key, long value) {
+        document.add(new LongPoint(key, value));
+        document.add(new NumericDocValuesField(key, value));
+    }
+
     private void addSearchableField(Document document, StringBuilder searchableText) {
         document.add(new TextField("searchable_text", searchableText.toString(), Field.Store.NO));
     }
@@ -0,0 +1,148 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model.parser.pst;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.lucene.document.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Everything the indexer needs from a PSTObject, read up front so only
+ * the reading stage of the pipeline has to access the PSTFile.
+ *
+ * @author Marten4n6
+ */
+@Getter
+class PSTItem {
+
+    private final String id;
+    private final String folderID;
+    private final List<ItemField> fields = new ArrayList<>();
+
+    /**
+     * The raw body, converted to text by the extraction stage.
+     */
+    private @Setter String rtfBody = "";
+    private @Setter String htmlBody = "";
+    private @Setter String plainBody = "";
+    private @Setter String body = "";
+
+    /**
+     * The raw content of the attachments which support text extraction,
+     * replaced by their text in the extraction stage.
+     */
+    private final List<AttachmentContent> attachments = new ArrayList<>();
+    private @Setter String attachmentText = "";
+
+    /**
+     * Shown in the message table, stored in the index so
+     * rows can be built without accessing the PSTFile.
+     */
+    private @Setter String type = "";
+    private @Setter String subject = "";
+    private @Setter String from = "";
+    private @Setter String to = "";
+    private @Setter String cc = "";
+    private @Setter long size;
+    private @Setter Date receivedDate;
+
+    /**
+     * Identify copies of this message in other sources.
+     */
+    private @Setter String messageID = "";
+    private @Setter Date submitDate;
+
+    /**
+     * Used to link messages without transport headers (like sent items) into their conversation.
+     */
+    private @Setter String inReplyTo = "";
+
+    /**
+     * The document built by the build stage.
+     */
+    private @Setter Document document;
+
+    /**
+     * Called by the write stage once the document is written.
+     */
+    private @Setter Runnable writtenListener;
+
+    PSTItem(String id, String folderID) {
+        this.id = id;
+        this.folderID = folderID;
+    }
+
+    void addText(String key, String value) {
+        fields.add(new ItemField(key, value, null));
+    }
+
+    void addDate(String key, Date value) {
+        fields.add(new ItemField(key, null, value));
+    }
+
+    /**
+     * @return The first text of the key, empty if the item doesn't have it.
+     */
+    String getText(String key) {
+        for (ItemField field : fields) {
+            if (field.getKey().equals(key) && field.getText() != null) {
+                return field.getText();
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Marks the position of the body, which isn't known until it's extracted.
+     */
+    void addBody(String rtfBody, String htmlBody, String plainBody) {
+        this.rtfBody = rtfBody;
+        this.htmlBody = htmlBody;
+        this.plainBody = plainBody;
+
+        fields.add(new ItemField("body", null, null));
+    }
+
+    void addAttachment(String fileName, String mimeType, byte[] content) {
+        attachments.add(new AttachmentContent(fileName, mimeType, content));
+    }
+
+    @AllArgsConstructor
+    @Getter
+    static class AttachmentContent {
+
+        private final String fileName;
+        private final String mimeType;
+        private final byte[] content;
+    }
+
+    @AllArgsConstructor
+    @Getter
+    static class ItemField {
+
+        private final String key;
+        private final String text;
+        private final Date date;
+    }
+}
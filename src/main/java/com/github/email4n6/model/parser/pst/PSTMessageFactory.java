@@ -21,16 +21,13 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.swing.text.BadLocationException;
 import javax.swing.text.rtf.RTFEditorKit;
 
-import org.apache.lucene.document.Document;
-import org.apache.lucene.index.Term;
-import org.apache.lucene.search.TermQuery;
-
 import com.github.email4n6.model.Case;
 import com.github.email4n6.model.Settings;
 import com.github.email4n6.model.message.AttachmentRow;
@@ -79,7 +76,7 @@ public class PSTMessageFactory implements MessageFactory {
      * @see IDGenerator
      */
     // Best solution I can think of...
-    private static final HashMap<String, PSTFile> fileFromID = new HashMap<>();
+    private static final Map<String, PSTFile> fileFromID = new ConcurrentHashMap<>();
 
     private Case currentCase;
     private BookmarksModel bookmarksModel;
@@ -105,6 +102,42 @@ public class PSTMessageFactory implements MessageFactory {
 
     @Override
     public MessageRow getMessageRow(String id) {
+        PSTFile pstFile = getPSTFile(id);
+
+        if (pstFile == null) {
+            return readMessageRow(id);
+        }
+        synchronized (pstFile) {
+            return readMessageRow(id);
+        }
+    }
+
+    @Override
+    public MessageValue getMessageValue(String id) {
+        PSTFile pstFile = getPSTFile(id);
+
+        if (pstFile == null) {
+            return readMessageValue(id);
+        }
+        synchronized (pstFile) {
+            return readMessageValue(id);
+        }
+    }
+
+    /**
+     * A PSTFile reads through one shared position, so every read of a file
+     * (including the input streams of its attachments) is synchronized on that PSTFile.
+     * Reads of different files don't wait for each other.
+     *
+     * @return The PSTFile the message ID belongs to, or null if the ID doesn't belong to a known PSTFile.
+     */
+    private static PSTFile getPSTFile(String id) {
+        String[] parts = id.split("-");
+
+        return parts.length > 1 ? fileFromID.get(parts[1]) : null;
+    }
+
+    private MessageRow readMessageRow(String id) {
         try {
             // A message ID is split up (with a "-") into three parts:
             // - The descriptor node ID of the message
@@ -212,8 +245,7 @@ public class PSTMessageFactory implements MessageFactory {
         return null;
     }
 
-    @Override
-    public MessageValue getMessageValue(String id) {
+    private MessageValue readMessageValue(String id) {
         try {
             // If the ID belongs to this parser it will have the
             // descriptor index as the first part and the PSTFile ID
@@ -438,7 +470,7 @@ public class PSTMessageFactory implements MessageFactory {
                             .attachmentName(attachmentName)
                             .lastModificationTime(attachment.getCreationTime())
                             .size(attachment.getSize())
-                            .inputStream(attachment.getFileInputStream()).build()
+                            .contentOpener(createContentOpener(pstFile, pstObject.getDescriptorNodeId(), i)).build()
                     );
                 }
 
@@ -518,7 +550,7 @@ public class PSTMessageFactory implements MessageFactory {
                             .attachmentName(attachmentName)
                             .lastModificationTime(attachment.getCreationTime())
                             .size(attachment.getSize())
-                            .inputStream(attachment.getFileInputStream()).build()
+                            .contentOpener(createContentOpener(pstFile, pstObject.getDescriptorNodeId(), i)).build()
                     );
                 }
 
@@ -541,25 +573,34 @@ public class PSTMessageFactory implements MessageFactory {
         return null;
     }
 
+    /**
+     * The attachment is loaded again when it's opened, so (cached) message values don't keep the PST's objects.
+     */
+    private static AttachmentRow.ContentOpener createContentOpener(PSTFile pstFile, long descriptorNodeID, int attachmentNumber) {
+        return () -> {
+            synchronized (pstFile) {
+                try {
+                    PSTMessage message = (PSTMessage) PSTObject.detectAndLoadPSTObject(pstFile, descriptorNodeID);
+
+                    return new LockedInputStream(message.getAttachment(attachmentNumber).getFileInputStream(), pstFile);
+                } catch (PSTException ex) {
+                    throw new IOException(ex);
+                }
+            }
+        };
+    }
+
     @Override
     public List<MessageRow> getMessagesFromTreeItem(TreeItem<TreeObject> treeItem) {
         if (treeItem.getValue() == null || treeItem.getValue().getFolderID() == null) return new ArrayList<>(0);
 
         try {
-            List<MessageRow> rows = new ArrayList<>();
-
             // Each PST message is indexed with a "folder_id" field, searching
             // for this field will return every message in a specific folder.
-            List<Document> results = searchModel.search(
-                    new TermQuery(new Term("folder_id", treeItem.getValue().getFolderID())),
-                    Integer.MAX_VALUE
-            );
+            List<String> messageIDs = searchModel.getFolderMessageIDs(treeItem.getValue().getFolderID());
+            List<MessageRow> rows = new ArrayList<>(messageIDs.size());
 
-            results.forEach(result -> {
-                String messageID = result.get("id");
-
-                rows.add(getMessageRow(messageID));
-            });
+            messageIDs.forEach(messageID -> rows.add(getMessageRow(messageID)));
             return rows;
         } catch (Exception ex) {
             log.warn("That tree item doesn't belong to this parser!");
@@ -19,23 +19,31 @@ package com.github.email4n6.model.parser.pst;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import com.github.email4n6.model.Settings;
+import org.apache.lucene.index.Term;
+
+import com.github.email4n6.model.parser.Checkpoint;
 import com.github.email4n6.model.parser.Parser;
 import com.github.email4n6.model.parser.ParserConfiguration;
+import com.github.email4n6.model.parser.ParserTask;
+import com.github.email4n6.model.parser.PipelineStage;
 import com.github.email4n6.view.tabs.tree.TreeObject;
 import com.pff.PSTException;
 import com.pff.PSTFile;
 import com.pff.PSTFolder;
 import com.pff.PSTObject;
 
-import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.scene.control.CheckBoxTreeItem;
 import javafx.scene.control.TreeItem;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -47,11 +55,11 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class PSTParser implements Parser {
 
-    // TODO -
-    // Instead of a global flag, SHA256 hash each file?
-    // This way we can support files that were moved or when new files are added.
-    private boolean isParsed;
-    private TreeItem<TreeObject> createdTree;
+    /**
+     * The maximum amount of messages a single work unit reads,
+     * so large folders (like an inbox) are spread over all reading threads.
+     */
+    private static final int SLICE_SIZE = 500;
 
     public PSTParser() {
         PSTMessageFactory.clearPSTFiles();
@@ -73,115 +81,254 @@ public class PSTParser implements Parser {
 
     @Override
     public TreeItem<TreeObject> parseFile(File file, ParserConfiguration configuration, int totalFiles) {
-        isParsed = Boolean.parseBoolean(Settings.get(configuration.getCurrentCase().getName(), getName() + "-IsParsed"));
+        boolean isParsed = configuration.getManifest().isIndexed(file);
 
-        Task task = new Task<Object>() {
-            private AtomicInteger messageAmount = new AtomicInteger(0);
-            private AtomicInteger finishedAmount = new AtomicInteger(0);
+        ParserTask<TreeItem<TreeObject>> task = new ParserTask<TreeItem<TreeObject>>() {
 
-            private PSTIndexer indexer;
             private CheckBoxTreeItem<TreeObject> rootTreeItem;
 
+            /**
+             * Folder slices go through the pipeline: read -> extract -> build -> write.
+             * The extract stage hands attachments to the indexer's attachment extractor, which has it's own threads.
+             * Each reading thread reads through it's own PSTFile handle since a
+             * PSTFile can't be shared between threads, the other stages don't access the PSTFile.
+             */
+            private PipelineStage<FolderSlice, PSTItem> pipeline;
+            private PSTIndexer indexer;
+            private ThreadLocal<PSTFile> readerFile;
+            private List<PSTFile> openedReaderFiles = Collections.synchronizedList(new ArrayList<>());
+
+            /**
+             * Remembers which folders (by descriptor node ID) are committed.
+             */
+            private Checkpoint checkpoint;
+
             @Override
             protected CheckBoxTreeItem<TreeObject> call() throws Exception {
-                PSTFile pstFile = new PSTFile(file);
+                PSTFile pstFile = PSTFileOpener.open(file, configuration.getCurrentCase().getName());
                 PSTFolder rootFolder = pstFile.getRootFolder();
 
                 String pstFileID = IDGenerator.getID(pstFile);
 
-                updateProgress(0, Long.MAX_VALUE);
+                updateTitle(getName());
 
                 // So we can retrieve this PSTFile later on.
                 PSTMessageFactory.addPSTFile(pstFile);
 
                 if (!isParsed) {
                     log.info("Parsing {} ({})...", file.getName(), file.getPath());
-                    indexer = new PSTIndexer(configuration);
 
-                    updateTitle(getName());
-                    updateProgress(0, Long.MAX_VALUE);
-
-                    updateMessage("Getting message amount...");
-                    calculateMessageAmount(pstFile.getRootFolder());
+                    checkpoint = Checkpoint.load(configuration.getCurrentCase().getName(), configuration.getSourceID(), configuration.getIndexer());
+                    indexer = new PSTIndexer(configuration);
+                    createPipeline(indexer);
+                    pipeline.start();
 
-                    updateProgress(0, messageAmount.get());
                     updateMessage("Indexing: " + file.getName());
                 } else {
                     log.info("This file is already parsed.");
+                    updateMessage("Loading: " + file.getName());
                 }
 
                 rootTreeItem = new CheckBoxTreeItem<>(new TreeObject(file.getName(), null));
+                List<PSTFolderNode> folders = new ArrayList<>();
 
-                for (PSTFolder subFolder : rootFolder.getSubFolders()) {
-                    processFolder(subFolder, pstFileID, rootTreeItem);
+                try {
+                    // The folder hierarchy is only read once, folders are indexed as soon as they're read.
+                    for (PSTFolder subFolder : rootFolder.getSubFolders()) {
+                        folders.add(PSTFolderNode.read(subFolder, folder -> {
+                            if (!isParsed) {
+                                indexFolder(folder, pstFileID);
+                            }
+                        }));
+                    }
+                } finally {
+                    if (!isParsed) {
+                        finishIndexing();
+                    }
                 }
+
+                folders.forEach(folder -> createTreeItem(folder, rootTreeItem));
                 return rootTreeItem;
             }
 
             /**
-             * Updates the messageAmount variable to the amount of messages in the PSTFolder.
+             * Waits for the pipeline to finish the added folders, then commits what was written.
+             * Every step runs even if the previous one failed, a failure of the pipeline is thrown afterwards.
              */
-            private void calculateMessageAmount(PSTFolder folder) {
+            private void finishIndexing() throws InterruptedException {
                 try {
-                    if (folder.getContentCount() != 0 && folder.getNodeType() != 3) {
-                        messageAmount.getAndAdd(folder.getContentCount());
-                    }
-
-                    if (folder.getNodeType() != 3) {
-                        for (PSTFolder pstFolder : folder.getSubFolders()) {
-                            calculateMessageAmount(pstFolder);
+                    pipeline.finish();
+                } finally {
+                    try {
+                        indexer.close();
+                    } finally {
+                        try {
+                            // Folders which weren't completely written aren't remembered, so they're indexed again next time.
+                            checkpoint.commit();
+                        } finally {
+                            closeReaderFiles();
                         }
                     }
-                } catch (IOException | PSTException ex) {
-                    log.error(ex.getMessage(), ex);
                 }
             }
 
             /**
-             * Recursively processes all folders and subfolders.
+             * Creates the pipeline stages, the thread count and queue depth
+             * of each stage can be changed in the case's settings.
              */
-            private void processFolder(PSTFolder folder, String pstFileID, CheckBoxTreeItem<TreeObject> treeItem) {
-                try {
-                    log.debug("Processing folder \"{}\" with {} messages...", folder.getDisplayName(), folder.getEmailCount());
-
-                    // Tree
-                    String treeItemTitle = folder.getEmailCount() != -1 && folder.getEmailCount() != 0 ? folder.getDisplayName() + " (" + folder.getEmailCount() + ")" : folder.getDisplayName();
-                    CheckBoxTreeItem<TreeObject> folderTreeItem = new CheckBoxTreeItem<>(new TreeObject(treeItemTitle, IDGenerator.getID(folder)));
+            private void createPipeline(PSTIndexer indexer) {
+                String caseName = configuration.getCurrentCase().getName();
+                int processors = Runtime.getRuntime().availableProcessors();
+
+                readerFile = ThreadLocal.withInitial(this::openReaderFile);
+
+                PipelineStage<PSTItem, Void> writeStage = PipelineStage.fromSettings(caseName, "write", processors, (item, output) -> {
+                    indexer.write(item.getDocument());
+                    item.getWrittenListener().run();
+                    checkpoint.documentWritten();
+                    addWorkDone(1);
+                }, null);
+                PipelineStage<PSTItem, PSTItem> buildStage = PipelineStage.fromSettings(caseName, "build", processors, (item, output) -> {
+                    item.setDocument(indexer.buildDocument(item));
+                    output.put(item);
+                }, writeStage);
+                PipelineStage<PSTItem, PSTItem> extractStage = PipelineStage.fromSettings(caseName, "extract", processors, (item, output) -> {
+                    indexer.extractBody(item);
+                    indexer.extractAttachments(item);
+                    output.put(item);
+                }, buildStage);
+                pipeline = PipelineStage.fromSettings(caseName, "read", processors, (slice, output) -> {
+                    readSlice(indexer, slice, output);
+                }, extractStage);
+
+                addStage(pipeline);
+                addStage(extractStage);
+                addStage(buildStage);
+                addStage(writeStage);
+            }
 
-                    treeItem.getChildren().add(folderTreeItem);
+            /**
+             * Adds the folder's messages to the pipeline.
+             * The total amount of messages grows as folders are added, so indexing can start right away.
+             */
+            private void indexFolder(PSTFolderNode folder, String pstFileID) {
+                if (folder.getContentCount() <= 0) {
+                    return;
+                }
 
-                    if (!isParsed && folder.getContentCount() > 0) {
+                log.debug("Indexing folder \"{}\" with {} messages...", folder.getDisplayName(), folder.getContentCount());
 
-                        PSTObject pstObject;
-                        String folderID = IDGenerator.getID(folder);
+                String checkpointID = "" + folder.getDescriptorNodeID();
+                addTotalWork(folder.getContentCount());
 
-                        while ((pstObject = folder.getNextChild()) != null) {
-                            // Do stuff with the PSTObject here...
-                            indexer.index(pstObject, pstFileID, folderID);
+                if (checkpoint.isDone(checkpointID)) {
+                    log.debug("Skipping folder \"{}\", already indexed.", folder.getDisplayName());
+                    addWorkDone(folder.getContentCount());
+                    return;
+                }
 
-                            finishedAmount.incrementAndGet();
-                            updateProgress(finishedAmount.get(), messageAmount.get());
+                try {
+                    // Remove what an interrupted attempt may have written of this folder.
+                    configuration.getIndexer().deleteSource(configuration.getSourceID(), new Term("folder_id", folder.getFolderID()));
+
+                    // Split the folder up into slices which are read by the reading stage.
+                    // The folder is finished once every slice is read and every read item is written.
+                    int sliceAmount = (folder.getContentCount() + SLICE_SIZE - 1) / SLICE_SIZE;
+                    AtomicInteger remaining = new AtomicInteger(sliceAmount);
+                    Runnable finishedListener = () -> {
+                        if (remaining.decrementAndGet() == 0) {
+                            checkpoint.setFinished(checkpointID);
                         }
+                    };
+
+                    for (int offset = 0; offset < folder.getContentCount(); offset += SLICE_SIZE) {
+                        int length = Math.min(SLICE_SIZE, folder.getContentCount() - offset);
+
+                        pipeline.put(new FolderSlice(folder.getDescriptorNodeID(), pstFileID, folder.getFolderID(), offset, length, remaining, finishedListener));
                     }
+                } catch (InterruptedException ex) {
+                    log.error("Interrupted while adding folder \"{}\".", folder.getDisplayName());
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            /**
+             * Recursively creates the tree items of the folder and it's subfolders.
+             */
+            private void createTreeItem(PSTFolderNode folder, CheckBoxTreeItem<TreeObject> treeItem) {
+                String treeItemTitle = folder.getEmailCount() != -1 && folder.getEmailCount() != 0 ? folder.getDisplayName() + " (" + folder.getEmailCount() + ")" : folder.getDisplayName();
+                CheckBoxTreeItem<TreeObject> folderTreeItem = new CheckBoxTreeItem<>(new TreeObject(treeItemTitle, folder.getFolderID()));
 
-                    // Recursive loop through all subfolders.
-                    if (folder.getNodeType() != 3) {
-                        for (PSTFolder subFolder : folder.getSubFolders()) {
-                            processFolder(subFolder, pstFileID, folderTreeItem);
+                treeItem.getChildren().add(folderTreeItem);
+                folder.getChildren().forEach(subFolder -> createTreeItem(subFolder, folderTreeItem));
+            }
+
+            /**
+             * Reads a slice of the folder's messages, called by the reading stage.
+             */
+            private void readSlice(PSTIndexer indexer, FolderSlice slice, PipelineStage.Output<PSTItem> output) throws InterruptedException {
+                try {
+                    PSTFolder folder = (PSTFolder) PSTObject.detectAndLoadPSTObject(readerFile.get(), slice.getFolderNodeID());
+                    PSTObject pstObject;
+
+                    folder.moveChildCursorTo(slice.getOffset());
+
+                    for (int i = 0; i < slice.getLength() && (pstObject = folder.getNextChild()) != null; i++) {
+                        PSTItem item = indexer.read(pstObject, slice.getPstFileID(), slice.getFolderID());
+
+                        if (item != null) {
+                            slice.getRemaining().incrementAndGet();
+                            item.setWrittenListener(slice.getFinishedListener());
+                            output.put(item);
+                        } else {
+                            addWorkDone(1);
                         }
-                    } else {
-                        log.debug("Skipping subfolders of \"{}\"...", folder.getDisplayName());
                     }
+
+                    // Not reached if reading failed, the folder will be indexed again next time.
+                    slice.getFinishedListener().run();
+                    log.debug("Pipeline: {}", getStages());
+                } catch (IOException | PSTException | IllegalStateException ex) {
+                    log.error("Failed to read folder {} of \"{}\": {}", slice.getFolderID(), file.getName(), ex.getMessage(), ex);
+                    addFailure();
+                }
+            }
+
+            /**
+             * @return A new PSTFile handle for the current reading thread.
+             */
+            private PSTFile openReaderFile() {
+                try {
+                    PSTFile pstFile = PSTFileOpener.open(file, configuration.getCurrentCase().getName());
+
+                    openedReaderFiles.add(pstFile);
+                    return pstFile;
                 } catch (IOException | PSTException ex) {
-                    log.error(ex.getMessage(), ex);
+                    throw new IllegalStateException("Failed to open reader handle: " + ex.getMessage(), ex);
+                }
+            }
+
+            private void closeReaderFiles() {
+                for (PSTFile pstFile : openedReaderFiles) {
+                    try {
+                        pstFile.close();
+                    } catch (IOException ex) {
+                        log.error(ex.getMessage(), ex);
+                    }
                 }
+                openedReaderFiles.clear();
             }
 
             @Override
             protected void succeeded() {
-                log.info("Finished parsing.");
-
-                Settings.set(configuration.getCurrentCase().getName(), getName() + "-IsParsed", "true");
+                if (getFailures() > 0) {
+                    // The checkpoint is kept, so only the folders which failed are indexed again.
+                    log.warn("Finished parsing \"{}\" with {} failure(s), it will be indexed again next time.", file.getName(), getFailures());
+                    updateMessage("Failed to read " + getFailures() + " item(s) of " + file.getName() + ", see the log.");
+                } else {
+                    log.info("Finished parsing.");
+                    configuration.getManifest().setIndexed(file);
+                }
                 configuration.getFinishedListener().handle(new ActionEvent());
             }
 
@@ -198,15 +345,29 @@ public class PSTParser implements Parser {
                 configuration.getFinishedListener().handle(new ActionEvent());
             }
         };
-        task.setOnScheduled((event) -> {
-            log.debug("Assigning created tree...");
-
-            createdTree = (TreeItem<TreeObject>)task.getValue();
-        });
+        configuration.getProgressReporter().addTask(task);
 
-        configuration.getLoadingStage().addTask(task);
-        log.debug("Returning: {}", createdTree);
+        // The tree is passed on by the progress reporter once the task succeeded.
+        return null;
+    }
 
-        return createdTree;
+    /**
+     * A range of messages in a folder, the unit of work of the reading stage.
+     */
+    @AllArgsConstructor
+    @Getter
+    private static class FolderSlice {
+
+        private final long folderNodeID;
+        private final String pstFileID;
+        private final String folderID;
+        private final int offset;
+        private final int length;
+
+        /**
+         * The amount of unfinished slices and unwritten items of the folder.
+         */
+        private final AtomicInteger remaining;
+        private final Runnable finishedListener;
     }
 }
@@ -1,282 +1,394 @@
-/*
- * This file is part of Email4n6.
- * Copyright (C) 2018  Marten4n6
- *
- * This program is free software: you can redistribute it and/or modify
- * it under the terms of the GNU General Public License as published by
- * the Free Software Foundation, either version 3 of the License, or
- * (at your option) any later version.
- *
- * This program is distributed in the hope that it will be useful,
- * but WITHOUT ANY WARRANTY; without even the implied warranty of
- * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
- * GNU General Public License for more details.
- *
- * You should have received a copy of the GNU General Public License
- * along with this program.  If not, see <http://www.gnu.org/licenses/>.
- */
-package com.github.email4n6.model.report;
-
-import java.awt.Desktop;
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.Writer;
-import java.nio.file.FileAlreadyExistsException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-
-import javax.swing.SwingUtilities;
-
-import com.github.email4n6.model.Case;
-import com.github.email4n6.model.Settings;
-import com.github.email4n6.model.message.MessageRow;
-import com.github.email4n6.model.message.MessageValue;
-
-import freemarker.template.Configuration;
-import freemarker.template.Template;
-import freemarker.template.TemplateException;
-import freemarker.template.TemplateExceptionHandler;
-import freemarker.template.Version;
-import javafx.collections.FXCollections;
-import javafx.scene.control.Alert;
-import javafx.scene.control.ButtonType;
-import javafx.scene.control.ComboBox;
-import javafx.scene.control.Label;
-import javafx.scene.control.Spinner;
-import javafx.scene.control.SpinnerValueFactory;
-import javafx.scene.input.KeyCode;
-import javafx.scene.input.KeyEvent;
-import javafx.scene.layout.GridPane;
-import javafx.scene.layout.Priority;
-import lombok.extern.slf4j.Slf4j;
-
-/**
- * Report implementation which generates HTML reports (based on X-Ways).
- *
- * @author Marten4n6
- */
-@Slf4j
-public class HTMLReport implements Report {
-
-    private Spinner<Integer> spinner;
-    private ComboBox<Integer> comboBox;
-
-    @Override
-    public String getReportType() {
-        return "HTML";
-    }
-
-    @Override
-    public void createReport(ReportConfiguration configuration) {
-        log.info("Creating HTML report...");
-
-        // Check if there's not already a report with this name.
-        if (new File(configuration.getOutputFolder().getPath() + File.separator + configuration.getReportName() + "_1.html").exists()) {
-            log.warn("A report with that name already exists, stopping...");
-            new Alert(Alert.AlertType.ERROR, "A report with that name already exists.", ButtonType.CLOSE).showAndWait();
-            return;
-        }
-
-        List<String> bookmarks = configuration.getBookmarksModel().getBookmarks();
-        List<MessageRow> pageItems = new ArrayList<>(); // The items of the current page.
-
-        int pageItemCount = 1;
-        int totalItemCount = 1;
-        int pageNumber = 0;
-        int maxItemsPerPage = spinner.getValue();
-
-        log.debug("Total bookmarks: {}", bookmarks.size());
-        log.debug("Maximum items per page: {}", maxItemsPerPage);
-
-        for (String bookmarkID : bookmarks) {
-            pageItems.add(configuration.getMessageFactory().getMessageRow(bookmarkID));
-
-            // Create the HTML version of this message and
-            // outputs all attachments.
-            createMessage(bookmarkID, configuration);
-
-            if (bookmarks.size() == totalItemCount) { // There's no more items left, create page.
-                log.debug("No more items left, creating page!");
-                pageNumber++;
-
-                createPage(configuration, pageItems, pageNumber, false, comboBox.getValue());
-                pageItems.clear();
-            } else if (pageItemCount == maxItemsPerPage) { // Maximum items (per page) reached, create page.
-                log.debug("Maximum items reached, creating page!");
-                pageItemCount = 0;
-                pageNumber++;
-
-                createPage(configuration, pageItems, pageNumber, true, comboBox.getValue());
-                pageItems.clear();
-            }
-
-            pageItemCount++;
-            totalItemCount++;
-        }
-
-        try {
-            Files.copy(
-                    HTMLReport.class.getClassLoader().getResourceAsStream("freemarker/Report.css"),
-                    Paths.get(configuration.getOutputFolder().getPath() + File.separator + "Report.css")
-            );
-        } catch (FileAlreadyExistsException ex) {
-            // CSS file already exists.
-        } catch (IOException ex) {
-            log.error(ex.getMessage(), ex);
-        }
-
-        log.info("Report created.");
-
-        Optional<ButtonType> confirmOpen = new Alert(Alert.AlertType.CONFIRMATION, "Report created, would you like to open the report?", ButtonType.YES, ButtonType.NO).showAndWait();
-
-        if (confirmOpen.isPresent() && confirmOpen.get() == ButtonType.YES) {
-            SwingUtilities.invokeLater(() -> {
-                try {
-                    Desktop.getDesktop().open(new File(configuration.getOutputFolder().getPath() + File.separator + configuration.getReportName() + "_1.html"));
-                } catch (IOException ex) {
-                    log.error(ex.getMessage(), ex);
-                }
-            });
-        }
-    }
-
-    /**
-     * Creates the HTML version of the message.
-     */
-    private void createMessage(String messageID, ReportConfiguration configuration) {
-        Map<String, Object> modelAndView = new HashMap<>();
-
-        File messageFolder = new File(configuration.getOutputFolder().getPath() + File.separator + "Files_" + configuration.getReportName());
-        File messageFile = new File(messageFolder.getPath() + File.separator + messageID + ".html");
-
-        messageFolder.mkdir();
-
-        MessageRow messageRow = configuration.getMessageFactory().getMessageRow(messageID);
-        MessageValue messageValue = configuration.getMessageFactory().getMessageValue(messageID);
-
-        // Output attachments
-        messageValue.getAttachments().forEach(attachment -> {
-            try {
-                Files.copy(
-                        attachment.getInputStream(),
-                        Paths.get(messageFolder + File.separator + (messageRow.getId() + "-" + attachment.getAttachmentName()))
-                );
-            } catch (IOException ex) {
-                log.error("Failed to copy attachment.", ex);
-            }
-        });
-
-        modelAndView.put("report_name", configuration.getReportName());
-        modelAndView.put("message_row", messageRow);
-        modelAndView.put("message_value", messageValue);
-        outputToHTML(configuration.getCurrentCase(), modelAndView, "HTMLMessage.html", messageFile);
-    }
-
-    /**
-     * Creates a page of items.
-     *
-     * @param items The items on this pages.
-     */
-    private void createPage(ReportConfiguration configuration, List<MessageRow> items, int pageNumber, boolean hasNextPage, int columns) {
-        Map<String, Object> modelAndView = new HashMap<>();
-        File outputFile = new File(configuration.getOutputFolder().getPath() + File.separator + configuration.getReportName() + "_" + pageNumber + ".html");
-
-        modelAndView.put("case", configuration.getCurrentCase());
-        modelAndView.put("items", items);
-        modelAndView.put("report_name", configuration.getReportName());
-        modelAndView.put("page_number", pageNumber);
-        modelAndView.put("has_next_page", hasNextPage);
-        modelAndView.put("columns", columns);
-
-        outputToHTML(configuration.getCurrentCase(), modelAndView, "HTMLReport.html", outputFile);
-    }
-
-    /**
-     * Renders the modelAndView to HTML with freemarker.
-     *
-     * @param currentCase  The currently open case.
-     * @param modelAndView The model and view.
-     * @param templateName The name of the template to use.
-     * @param outputFile   The file to output to.
-     */
-    private void outputToHTML(Case currentCase, Map<String, Object> modelAndView, String templateName, File outputFile) {
-        try {
-            Configuration configuration = new Configuration(Configuration.VERSION_2_3_23);
-
-            configuration.setClassForTemplateLoading(HTMLReport.class, "/freemarker");
-            configuration.setIncompatibleImprovements(new Version(2, 3, 23));
-            configuration.setDefaultEncoding("UTF-8");
-            configuration.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
-            configuration.setSetting("date_format", Settings.get(currentCase.getName(), "date_format"));
-
-            Template template = configuration.getTemplate(templateName);
-            Writer fileWriter = new FileWriter(outputFile);
-
-            template.process(modelAndView, fileWriter);
-            fileWriter.close();
-        } catch (IOException | TemplateException ex) {
-            log.error(ex.getMessage(), ex);
-        }
-    }
-
-    @Override
-    public GridPane getSettingsPane() {
-        GridPane settingsPane = new GridPane();
-
-        // Layout
-        settingsPane.setHgap(5);
-        settingsPane.setVgap(5);
-
-        // Labels
-        Label labelItemsPerPage = new Label("Items per page:");
-        Label labelColumnsPerPage = new Label("Columns:");
-
-        // Spinner (items per page)
-        final int SPINNER_MAX = 500;
-        final int SPINNER_DEFAULT = 200;
-
-        spinner = new Spinner<>(1, 500, 100);
-
-        spinner.setEditable(true);
-        spinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(1, SPINNER_MAX, SPINNER_DEFAULT, 10));
-
-        spinner.setMaxWidth(Double.MAX_VALUE);
-        GridPane.setHgrow(spinner, Priority.ALWAYS);
-
-        // Combo box (columns per page)
-        comboBox = new ComboBox<>(FXCollections.observableArrayList(1, 2, 3, 4, 5));
-
-        comboBox.setValue(3);
-        comboBox.setMaxWidth(Double.MAX_VALUE);
-        GridPane.setHgrow(comboBox, Priority.ALWAYS);
-
-        // Add
-        settingsPane.addRow(0, labelItemsPerPage, spinner);
-        settingsPane.addRow(1, labelColumnsPerPage, comboBox);
-
-        // Listeners
-        spinner.getEditor().addEventHandler(KeyEvent.KEY_PRESSED, (KeyEvent event) -> {
-            if (event.getCode() == KeyCode.ENTER) {
-                try {
-                    // Make sure the user entered a valid number and
-                    // that it is not greater than SPINNER_MAX.
-                    int enteredAmount = Integer.parseInt(spinner.getEditor().textProperty().get());
-
-                    if (enteredAmount > SPINNER_MAX) {
-                        spinner.getEditor().textProperty().set("" + SPINNER_MAX);
-                    }
-                } catch (NumberFormatException ex) {
-                    spinner.getEditor().textProperty().set("" + SPINNER_DEFAULT);
-                }
-            }
-        });
-
-        return settingsPane;
-    }
-}
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model.report;
+
+import java.awt.Desktop;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import javax.swing.SwingUtilities;
+
+import com.github.email4n6.model.Settings;
+import com.github.email4n6.model.message.AttachmentStore;
+import com.github.email4n6.model.message.MessageRow;
+import com.github.email4n6.model.message.MessageValue;
+import com.github.email4n6.model.parser.PipelineStage;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateExceptionHandler;
+import freemarker.template.Version;
+import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
+import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.Spinner;
+import javafx.scene.control.SpinnerValueFactory;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.Priority;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Report implementation which generates HTML reports (based on X-Ways).
+ *
+ * @author Marten4n6
+ */
+@Slf4j
+public class HTMLReport implements Report {
+
+    private static final Map<String, Configuration> CONFIGURATIONS = new ConcurrentHashMap<>();
+
+    private Spinner<Integer> spinner;
+    private ComboBox<Integer> comboBox;
+
+    @Override
+    public String getReportType() {
+        return "HTML";
+    }
+
+    @Override
+    public void createReport(ReportConfiguration configuration) {
+        log.info("Creating HTML report...");
+
+        if (configuration.getBookmarksModel().getBookmarks().isEmpty()) {
+            log.warn("There are no bookmarks to report, stopping...");
+            new Alert(Alert.AlertType.INFORMATION, "There are no bookmarks to report, bookmark messages first.", ButtonType.CLOSE).showAndWait();
+            return;
+        }
+
+        // Check if there's not already a report with this name.
+        if (new File(configuration.getOutputFolder().getPath() + File.separator + configuration.getReportName() + "_1.html").exists()) {
+            log.warn("A report with that name already exists, stopping...");
+            new Alert(Alert.AlertType.ERROR, "A report with that name already exists.", ButtonType.CLOSE).showAndWait();
+            return;
+        }
+
+        int maxItemsPerPage = spinner.getValue();
+        int columns = comboBox.getValue();
+
+        new Thread(new Task<Long>() {
+            @Override
+            protected Long call() throws Exception {
+                return writeReport(configuration, maxItemsPerPage, columns);
+            }
+
+            @Override
+            protected void succeeded() {
+                File firstPage = new File(configuration.getOutputFolder().getPath() + File.separator + configuration.getReportName() + "_1.html");
+                long failures = getValue();
+
+                if (!firstPage.exists()) {
+                    log.error("The report failed, no pages were created ({} failure(s)).", failures);
+                    new Alert(Alert.AlertType.ERROR, "Failed to create the report, see the log.", ButtonType.CLOSE).showAndWait();
+                    return;
+                }
+
+                Alert confirmAlert;
+
+                if (failures > 0) {
+                    log.warn("Report created with {} failure(s).", failures);
+                    confirmAlert = new Alert(Alert.AlertType.WARNING, "Report created, but " + failures + " message(s), attachment(s) or page(s) failed "
+                            + "and are missing (see the log), would you like to open the report?", ButtonType.YES, ButtonType.NO);
+                } else {
+                    log.info("Report created.");
+                    confirmAlert = new Alert(Alert.AlertType.CONFIRMATION, "Report created, would you like to open the report?", ButtonType.YES, ButtonType.NO);
+                }
+
+                Optional<ButtonType> confirmOpen = confirmAlert.showAndWait();
+
+                if (confirmOpen.isPresent() && confirmOpen.get() == ButtonType.YES) {
+                    SwingUtilities.invokeLater(() -> {
+                        try {
+                            Desktop.getDesktop().open(firstPage);
+                        } catch (IOException ex) {
+                            log.error(ex.getMessage(), ex);
+                        }
+                    });
+                }
+            }
+
+            @Override
+            protected void failed() {
+                log.error(getException().getMessage(), getException());
+                new Alert(Alert.AlertType.ERROR, "Failed to create the report: " + getException().getMessage(), ButtonType.CLOSE).showAndWait();
+            }
+        }, "HTMLReport").start();
+    }
+
+    /**
+     * Writes the pages and messages of the report. Bookmarks are handled a page at a time,
+     * so only the pages and messages waiting to be rendered are kept in memory.
+     * <p>
+     * Parsers may not support being accessed by multiple threads, so messages are read by the
+     * "report_read" stage, which uses a single thread by default. The "report_render" stage exports
+     * the attachments and renders the pages and messages in parallel, the message factory
+     * synchronizes the attachment reads with other reads of the parser.
+     *
+     * @return The amount of messages, attachments and pages which failed and are missing from the report.
+     */
+    private long writeReport(ReportConfiguration configuration, int maxItemsPerPage, int columns) throws IOException, InterruptedException {
+        String caseName = configuration.getCurrentCase().getName();
+        List<String> bookmarks = configuration.getBookmarksModel().getBookmarks();
+        long startTime = System.currentTimeMillis();
+
+        log.debug("Total bookmarks: {}", bookmarks.size());
+        log.debug("Maximum items per page: {}", maxItemsPerPage);
+
+        Configuration freemarker = getConfiguration(Settings.get(caseName, "date_format"));
+        Template pageTemplate = freemarker.getTemplate("HTMLReport.html");
+        Template messageTemplate = freemarker.getTemplate("HTMLMessage.html");
+
+        File messageFolder = new File(configuration.getOutputFolder().getPath() + File.separator + "Files_" + configuration.getReportName());
+        messageFolder.mkdir();
+
+        // Attachments are stored once, no matter how many messages they're attached to.
+        AttachmentStore attachmentStore = new AttachmentStore(messageFolder.toPath().resolve("attachments"));
+        LongAdder skipped = new LongAdder();
+
+        PipelineStage<RenderJob, Void> renderStage = PipelineStage.fromSettings(caseName, "report_render",
+                Runtime.getRuntime().availableProcessors(), (job, output) -> job.render(), null);
+        PipelineStage<Page, RenderJob> readStage = PipelineStage.fromSettings(caseName, "report_read", 1, (page, output) -> {
+            List<MessageRow> pageRows = configuration.getMessageFactory().getMessageRowsByID(page.ids);
+
+            if (pageRows == null) {
+                log.warn("Failed to create the rows of page {}.", page.number);
+                skipped.increment();
+                return;
+            }
+            List<MessageRow> rows = pageRows.stream().filter(Objects::nonNull).collect(Collectors.toList());
+
+            for (MessageRow row : rows) {
+                MessageValue value = configuration.getMessageFactory().getMessageValue(row.getId());
+
+                if (value == null) {
+                    log.warn("Failed to read message \"{}\", skipping.", row.getId());
+                    skipped.increment();
+                    continue;
+                }
+                output.put(() -> {
+                    exportAttachments(attachmentStore, messageFolder, row, value, skipped);
+                    createMessage(configuration, messageTemplate, messageFolder, row, value);
+                });
+            }
+            output.put(() -> createPage(configuration, pageTemplate, rows, page.number, page.hasNextPage, columns));
+        }, renderStage);
+
+        readStage.start();
+
+        try {
+            for (int from = 0, number = 1; from < bookmarks.size(); from += maxItemsPerPage, number++) {
+                int to = Math.min(from + maxItemsPerPage, bookmarks.size());
+
+                readStage.put(new Page(new ArrayList<>(bookmarks.subList(from, to)), number, to < bookmarks.size()));
+            }
+        } finally {
+            readStage.finish();
+        }
+
+        try {
+            Files.copy(
+                    HTMLReport.class.getClassLoader().getResourceAsStream("freemarker/Report.css"),
+                    Paths.get(configuration.getOutputFolder().getPath() + File.separator + "Report.css")
+            );
+        } catch (FileAlreadyExistsException ex) {
+            // CSS file already exists.
+        } catch (IOException ex) {
+            log.error(ex.getMessage(), ex);
+        }
+
+        log.debug("Wrote {} messages in {}ms ({}, {}, attachments: {}).", bookmarks.size(), System.currentTimeMillis() - startTime, readStage, renderStage, attachmentStore);
+        return skipped.sum() + readStage.getFailedAmount() + renderStage.getFailedAmount();
+    }
+
+    /**
+     * Outputs the attachments of the message as links to the attachment store.
+     *
+     * @param failures Counts the attachments which failed.
+     */
+    private void exportAttachments(AttachmentStore attachmentStore, File messageFolder, MessageRow messageRow, MessageValue messageValue, LongAdder failures) {
+        messageValue.getAttachments().forEach(attachment -> {
+            try {
+                attachmentStore.export(attachment, Paths.get(messageFolder + File.separator + (messageRow.getId() + "-" + attachment.getAttachmentName())));
+            } catch (IOException ex) {
+                log.error("Failed to copy attachment.", ex);
+                failures.increment();
+            }
+        });
+    }
+
+    /**
+     * Creates the HTML version of the message.
+     */
+    private void createMessage(ReportConfiguration configuration, Template template, File messageFolder,
+                               MessageRow messageRow, MessageValue messageValue) throws IOException, TemplateException {
+        Map<String, Object> modelAndView = new HashMap<>();
+        File messageFile = new File(messageFolder.getPath() + File.separator + messageRow.getId() + ".html");
+
+        modelAndView.put("report_name", configuration.getReportName());
+        modelAndView.put("message_row", messageRow);
+        modelAndView.put("message_value", messageValue);
+        outputToHTML(template, modelAndView, messageFile);
+    }
+
+    /**
+     * Creates a page of items.
+     *
+     * @param items The items on this pages.
+     */
+    private void createPage(ReportConfiguration configuration, Template template, List<MessageRow> items,
+                            int pageNumber, boolean hasNextPage, int columns) throws IOException, TemplateException {
+        Map<String, Object> modelAndView = new HashMap<>();
+        File outputFile = new File(configuration.getOutputFolder().getPath() + File.separator + configuration.getReportName() + "_" + pageNumber + ".html");
+
+        modelAndView.put("case", configuration.getCurrentCase());
+        modelAndView.put("items", items);
+        modelAndView.put("report_name", configuration.getReportName());
+        modelAndView.put("page_number", pageNumber);
+        modelAndView.put("has_next_page", hasNextPage);
+        modelAndView.put("columns", columns);
+
+        outputToHTML(template, modelAndView, outputFile);
+    }
+
+    /**
+     * Renders the modelAndView to HTML with freemarker, straight to the file.
+     *
+     * @param template     The template to use.
+     * @param modelAndView The model and view.
+     * @param outputFile   The file to output to.
+     */
+    private void outputToHTML(Template template, Map<String, Object> modelAndView, File outputFile) throws IOException, TemplateException {
+        try (Writer fileWriter = new BufferedWriter(new FileWriter(outputFile), 64 * 1024)) {
+            template.process(modelAndView, fileWriter);
+        }
+    }
+
+    /**
+     * Configurations are thread safe once set up and cache their parsed templates,
+     * so there's only one per date format.
+     *
+     * @return The freemarker configuration which formats dates with the date format.
+     */
+    private static Configuration getConfiguration(String dateFormat) {
+        return CONFIGURATIONS.computeIfAbsent(dateFormat, format -> {
+            Configuration configuration = new Configuration(Configuration.VERSION_2_3_23);
+
+            configuration.setClassForTemplateLoading(HTMLReport.class, "/freemarker");
+            configuration.setIncompatibleImprovements(new Version(2, 3, 23));
+            configuration.setDefaultEncoding("UTF-8");
+            configuration.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
+            configuration.setDateFormat(format);
+            return configuration;
+        });
+    }
+
+    @Override
+    public GridPane getSettingsPane() {
+        GridPane settingsPane = new GridPane();
+
+        // Layout
+        settingsPane.setHgap(5);
+        settingsPane.setVgap(5);
+
+        // Labels
+        Label labelItemsPerPage = new Label("Items per page:");
+        Label labelColumnsPerPage = new Label("Columns:");
+
+        // Spinner (items per page)
+        final int SPINNER_MAX = 500;
+        final int SPINNER_DEFAULT = 200;
+
+        spinner = new Spinner<>(1, 500, 100);
+
+        spinner.setEditable(true);
+        spinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(1, SPINNER_MAX, SPINNER_DEFAULT, 10));
+
+        spinner.setMaxWidth(Double.MAX_VALUE);
+        GridPane.setHgrow(spinner, Priority.ALWAYS);
+
+        // Combo box (columns per page)
+        comboBox = new ComboBox<>(FXCollections.observableArrayList(1, 2, 3, 4, 5));
+
+        comboBox.setValue(3);
+        comboBox.setMaxWidth(Double.MAX_VALUE);
+        GridPane.setHgrow(comboBox, Priority.ALWAYS);
+
+        // Add
+        settingsPane.addRow(0, labelItemsPerPage, spinner);
+        settingsPane.addRow(1, labelColumnsPerPage, comboBox);
+
+        // Listeners
+        spinner.getEditor().addEventHandler(KeyEvent.KEY_PRESSED, (KeyEvent event) -> {
+            if (event.getCode() == KeyCode.ENTER) {
+                try {
+                    // Make sure the user entered a valid number and
+                    // that it is not greater than SPINNER_MAX.
+                    int enteredAmount = Integer.parseInt(spinner.getEditor().textProperty().get());
+
+                    if (enteredAmount > SPINNER_MAX) {
+                        spinner.getEditor().textProperty().set("" + SPINNER_MAX);
+                    }
+                } catch (NumberFormatException ex) {
+                    spinner.getEditor().textProperty().set("" + SPINNER_DEFAULT);
+                }
+            }
+        });
+
+        return settingsPane;
+    }
+
+    /**
+     * The bookmarks shown on a page of the report.
+     */
+    @AllArgsConstructor
+    private static class Page {
+
+        private final List<String> ids;
+        private final int number;
+        private final boolean hasNextPage;
+    }
+
+    /**
+     * Renders a page or message of the report.
+     */
+    private interface RenderJob {
+
+        void render() throws IOException, TemplateException;
+    }
+}
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -83,6 +84,27 @@ public class PathUtils {
         return new File(getCasePath(caseName) + File.separator + "settings.txt");
     }
 
+    /**
+     * @return The path to the file which keeps track of the case's sources.
+     */
+    public static File getManifestFile(String caseName) {
+        return new File(getCasePath(caseName) + File.separator + "manifest.json");
+    }
+
+    /**
+     * @return The path where the checkpoints of partially indexed sources are stored.
+     */
+    public static String getCheckpointPath(String caseName) {
+        return getCasePath(caseName) + File.separator + "checkpoints";
+    }
+
+    /**
+     * @return The path to the file which links the case's messages into conversations.
+     */
+    public static File getConversationFile(String caseName) {
+        return new File(getCasePath(caseName) + File.separator + "conversations.dat");
+    }
+
     /**
      * @return The path where the case's index is stored.
      */
@@ -96,4 +118,19 @@ public class PathUtils {
     public static String getTempPath() {
         return getApplicationPath() + File.separator + "temp";
     }
+
+    /**
+     * Writes the file to a temporary file next to it, which then replaces the file in one step.
+     * A process which is killed while writing leaves the previous file intact, not a truncated one.
+     */
+    public static void writeAtomically(File file, byte[] content) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+
+        try {
+            Files.write(tempFile.toPath(), content);
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
 }
@@ -19,7 +19,8 @@ package com.github.email4n6.view;
 
 import com.github.email4n6.model.Case;
 import com.github.email4n6.model.Indexer;
-import com.github.email4n6.model.message.MessageRow;
+import com.github.email4n6.model.parser.ProgressReporter;
+import com.github.email4n6.model.message.factory.CachingMessageFactory;
 import com.github.email4n6.model.message.factory.DefaultMessageFactory;
 import com.github.email4n6.model.message.factory.MessageFactory;
 import com.github.email4n6.view.messagepane.DefaultContextMenu;
@@ -31,7 +32,6 @@ import com.github.email4n6.view.tabs.bookmarks.TagModel;
 import com.github.email4n6.view.tabs.home.HomeController;
 import com.github.email4n6.view.tabs.home.HomeModel;
 import com.github.email4n6.view.tabs.home.HomeTab;
-import com.github.email4n6.view.tabs.home.loading.LoadingStage;
 import com.github.email4n6.view.tabs.report.ReportController;
 import com.github.email4n6.view.tabs.report.ReportModel;
 import com.github.email4n6.view.tabs.report.ReportTab;
@@ -73,7 +73,7 @@ public class TabbedScene {
 
         new HomeController(homeTab, homeModel);
 
-        homeModel.setOnFinishedParsing((Case currentCase, Indexer indexer, LoadingStage loadingStage) -> {
+        homeModel.setOnFinishedParsing((Case currentCase, Indexer indexer, ProgressReporter loadingStage) -> {
             // Parsing finished, add all other tabs.
             loadingStage.setStatus("Closing the indexer...");
             log.info("Closing the indexer...");
@@ -91,9 +91,9 @@ public class TabbedScene {
                 TagModel tagModel = new TagModel(homeModel.getDatabase());
                 SearchModel searchModel = new SearchModel(currentCase.getName());
 
-                MessageFactory messageFactory = new DefaultMessageFactory(currentCase, bookmarksModel, tagModel, searchModel);
+                MessageFactory messageFactory = new CachingMessageFactory(new DefaultMessageFactory(currentCase, bookmarksModel, tagModel, searchModel), currentCase);
 
-                TreeModel treeModel = new TreeModel(messageFactory, loadingStage.getCreatedTreeItems());
+                TreeModel treeModel = new TreeModel(messageFactory, searchModel, loadingStage.getCreatedTreeItems());
                 ReportModel reportModel = new ReportModel(bookmarksModel, tagModel, messageFactory, currentCase);
 
                 // View
@@ -135,12 +135,11 @@ public class TabbedScene {
                                 
                                 // Select message
                                 Platform.runLater(() -> {
-                                    for (MessageRow messageRow : treeTab.getMessagePane().getTable().getItems()) {
-                                        if (messageRow.getId().equals(messageID)) {
-                                            treeTab.getMessagePane().getTable().getSelectionModel().select(messageRow);
-                                            treeTab.getMessagePane().getTable().scrollTo(messageRow);
-                                            break;
-                                        }
+                                    int index = treeTab.getMessagePane().getLazyItems().indexOfID(messageID);
+
+                                    if (index != -1) {
+                                        treeTab.getMessagePane().getTable().getSelectionModel().select(index);
+                                        treeTab.getMessagePane().getTable().scrollTo(index);
                                     }
                                 });
                             } catch (InterruptedException ex) {
@@ -150,6 +149,12 @@ public class TabbedScene {
                     });
                 };
 
+                searchTab.setFolderTitles(folderID -> {
+                    TreeItem<TreeObject> folder = getTreeViewItem(treeTab.getRootTreeItem(), folderID);
+
+                    return folder == null ? folderID : folder.getValue().getTitle();
+                });
+
                 treeMessagePaneController.getDefaultContextMenu().setOnShowInTree(onShowInTree);
                 searchMessagePaneController.getDefaultContextMenu().setOnShowInTree(onShowInTree);
                 bookmarksMessagePaneController.getDefaultContextMenu().setOnShowInTree(onShowInTree);
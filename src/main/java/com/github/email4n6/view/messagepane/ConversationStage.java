@@ -0,0 +1,71 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.view.messagepane;
+
+import java.util.List;
+
+import com.github.email4n6.model.Version;
+import com.github.email4n6.model.message.MessageRow;
+import com.github.email4n6.model.message.factory.MessageFactory;
+
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+
+/**
+ * A stage which shows the messages of a conversation, from old to new.
+ *
+ * @author Marten4n6
+ */
+class ConversationStage {
+
+    private Stage stage;
+
+    /**
+     * Initializes the conversation stage.
+     *
+     * @param rows       The messages of the conversation.
+     * @param selectedID The message which is selected.
+     */
+    ConversationStage(MessageFactory messageFactory, List<MessageRow> rows, String selectedID, DefaultContextMenu.ShowInTreeEvent onShowInTree) {
+        stage = new Stage();
+        MessagePane messagePane = new MessagePane();
+        MessagePaneController messagePaneController = new MessagePaneController(messagePane, messageFactory);
+        Scene scene = new Scene(messagePane.getPane(), 900, 600);
+
+        // Stage
+        stage.setTitle("Email4n6 v" + Version.VERSION_NUMBER + " - Conversation (" + rows.size() + " messages)");
+        stage.setScene(scene);
+
+        // Messages
+        messagePaneController.getDefaultContextMenu().setOnShowInTree(onShowInTree);
+        messagePane.getTable().getItems().setAll(rows);
+
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).getId().equals(selectedID)) {
+                messagePane.getTable().getSelectionModel().select(i);
+                messagePane.getTable().scrollTo(i);
+                break;
+            }
+        }
+    }
+
+    public void show() {
+        stage.centerOnScreen();
+        stage.show();
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.view.messagepane;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.search.Sort;
+
+import com.github.email4n6.model.message.MessageRow;
+import com.github.email4n6.model.message.factory.MessageFactory;
+import com.github.email4n6.view.tabs.search.SearchModel;
+
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.collections.ObservableListBase;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Items of the message table which only holds message IDs, the table only asks for the rows it shows.
+ * Rows are created in blocks when first shown and kept in a small window of recently shown rows.
+ * <p>
+ * Messages can only be added, a list without certain messages is created with {@link #without(Collection)}.
+ * Must only be used from the JavaFX application thread.
+ *
+ * @author Marten4n6
+ */
+@Slf4j
+public class LazyMessageList extends ObservableListBase<MessageRow> {
+
+    /**
+     * The amount of rows kept in memory, at least a few times the amount of visible rows.
+     */
+    private static final int WINDOW_SIZE = 256;
+
+    /**
+     * The amount of rows created at a time.
+     */
+    private static final int BLOCK_SIZE = 32;
+
+    private final MessageFactory messageFactory;
+    private final SearchModel searchModel;
+
+    private final List<String> ids = new ArrayList<>();
+
+    /**
+     * The amount of copies of collapsed messages, by message ID.
+     */
+    private final Map<String, Integer> copies = new HashMap<>();
+
+    /**
+     * Access ordered, so the least recently shown row is removed first.
+     */
+    private final Map<String, MessageRow> window = new LinkedHashMap<String, MessageRow>(WINDOW_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, MessageRow> eldest) {
+            return size() > WINDOW_SIZE;
+        }
+    };
+
+    public LazyMessageList(MessageFactory messageFactory, SearchModel searchModel) {
+        this.messageFactory = messageFactory;
+        this.searchModel = searchModel;
+    }
+
+    @Override
+    public MessageRow get(int index) {
+        String id = ids.get(index);
+        MessageRow row = window.get(id);
+
+        if (row == null) {
+            createBlock(index);
+            row = window.get(id);
+
+            if (row == null) {
+                // The message no longer exists.
+                row = MessageRow.builder()
+                        .id(id)
+                        .bookmarked(new SimpleBooleanProperty(false))
+                        .tag(new SimpleStringProperty())
+                        .copies(copies.getOrDefault(id, 0)).build();
+                window.put(id, row);
+            }
+        }
+        return row;
+    }
+
+    @Override
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * @return The index of the message, -1 if it isn't in this list.
+     */
+    public int indexOfID(String id) {
+        return ids.indexOf(id);
+    }
+
+    /**
+     * Adds messages to the end of the list.
+     */
+    public void addIDs(List<String> newIDs) {
+        addIDs(newIDs, Collections.emptyMap());
+    }
+
+    /**
+     * Adds messages to the end of the list.
+     *
+     * @param newCopies The amount of copies of collapsed messages, shown in their rows.
+     */
+    public void addIDs(List<String> newIDs, Map<String, Integer> newCopies) {
+        if (newIDs.isEmpty()) return;
+
+        copies.putAll(newCopies);
+
+        int from = ids.size();
+        ids.addAll(newIDs);
+
+        beginChange();
+        nextAdd(from, ids.size());
+        endChange();
+    }
+
+    /**
+     * @return A new list without the messages, the rows already created are reused.
+     */
+    public LazyMessageList without(Collection<String> removedIDs) {
+        Set<String> removed = new HashSet<>(removedIDs);
+        LazyMessageList list = new LazyMessageList(messageFactory, searchModel);
+
+        for (String id : ids) {
+            if (!removed.contains(id)) {
+                list.ids.add(id);
+            }
+        }
+        window.forEach((id, row) -> {
+            if (!removed.contains(id)) list.window.put(id, row);
+        });
+        list.copies.putAll(copies);
+        return list;
+    }
+
+    /**
+     * Sorts the messages by the doc values of the index, without creating their rows.
+     *
+     * @see SearchModel#createSort(String, boolean)
+     */
+    public void sort(Sort sort) {
+        List<String> sortedIDs = new ArrayList<>(searchModel.sortIDs(ids, sort));
+
+        if (sortedIDs.size() != ids.size()) {
+            log.warn("Failed to sort by {}, the list contains duplicate messages.", sort);
+            return;
+        }
+
+        Map<String, Integer> oldIndexes = new HashMap<>(ids.size() * 2);
+
+        for (int i = 0; i < ids.size(); i++) {
+            oldIndexes.put(ids.get(i), i);
+        }
+
+        int[] permutation = new int[ids.size()];
+
+        for (int i = 0; i < sortedIDs.size(); i++) {
+            permutation[oldIndexes.get(sortedIDs.get(i))] = i;
+        }
+
+        ids.clear();
+        ids.addAll(sortedIDs);
+
+        beginChange();
+        nextPermutation(0, ids.size(), permutation);
+        endChange();
+    }
+
+    /**
+     * Creates the rows of the block which contains the index, at once.
+     */
+    private void createBlock(int index) {
+        int from = index - index % BLOCK_SIZE;
+        int to = Math.min(from + BLOCK_SIZE, ids.size());
+        List<String> missingIDs = new ArrayList<>(BLOCK_SIZE);
+
+        for (String id : ids.subList(from, to)) {
+            if (!window.containsKey(id)) missingIDs.add(id);
+        }
+
+        List<MessageRow> rows = messageFactory.getMessageRowsByID(missingIDs);
+
+        if (rows == null) {
+            log.warn("Failed to create the rows of {} messages.", missingIDs.size());
+            return;
+        }
+
+        for (MessageRow row : rows) {
+            if (row != null) {
+                row.setCopies(copies.getOrDefault(row.getId(), 0));
+                window.put(row.getId(), row);
+            }
+        }
+    }
+}
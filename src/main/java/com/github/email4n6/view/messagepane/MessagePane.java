@@ -19,11 +19,18 @@ package com.github.email4n6.view.messagepane;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+
+import org.apache.lucene.search.Sort;
 
 import com.github.email4n6.model.Version;
 import com.github.email4n6.model.message.AttachmentRow;
 import com.github.email4n6.model.message.MessageRow;
+import com.github.email4n6.model.message.factory.IndexMessageFactory;
+import com.github.email4n6.view.tabs.search.SearchModel;
 
 import javafx.beans.binding.Bindings;
 import javafx.beans.binding.IntegerBinding;
@@ -78,6 +85,17 @@ public class MessagePane {
 
     private @Getter SplitPane pane;
     private @Getter TableView<MessageRow> table;
+    private @Getter LazyMessageList lazyItems;
+
+    /**
+     * Shows the amount of copies of collapsed search results.
+     */
+    private TableColumn<MessageRow, String> columnCopies;
+
+    /**
+     * The index fields which the table columns are sorted by, when the items are lazy.
+     */
+    private Map<TableColumn<MessageRow, ?>, String> sortFields = new HashMap<>();
 
     private @Getter WebView bodyView;
     private @Getter WebView headersView;
@@ -86,6 +104,11 @@ public class MessagePane {
     private @Setter ChangeListener<MessageRow> onMessageSelectionChange;
     private @Setter EventHandler<ActionEvent> onOpenAttachment;
 
+    /**
+     * Called instead of sorting the lazy items, with the new sort order (null if unsorted).
+     */
+    private @Setter Consumer<Sort> onIndexSort;
+
     public MessagePane() {
         // Split Pane
         pane = new SplitPane();
@@ -111,6 +134,7 @@ public class MessagePane {
         TableColumn<MessageRow, String> columnCC = new TableColumn<>("CC");
         TableColumn<MessageRow, String> columnTag = new TableColumn<>("Tag");
         TableColumn<MessageRow, Boolean> columnBookmark = new TableColumn<>("Bookmark");
+        columnCopies = new TableColumn<>("Copies");
 
         columnFrom.setCellValueFactory(param -> new SimpleStringProperty(param.getValue().getFrom()));
         columnTo.setCellValueFactory(param -> new SimpleStringProperty(param.getValue().getTo()));
@@ -120,6 +144,9 @@ public class MessagePane {
         columnCC.setCellValueFactory(param -> new SimpleStringProperty(param.getValue().getCc()));
         columnTag.setCellValueFactory(param -> param.getValue().getTag());
         columnBookmark.setCellValueFactory(param -> param.getValue().getBookmarked());
+        columnCopies.setCellValueFactory(param -> new SimpleStringProperty(param.getValue().getCopies() > 1 ? "" + param.getValue().getCopies() : ""));
+        columnCopies.setSortable(false);
+        columnCopies.setVisible(false);
 
         columnReceived.setCellFactory(column -> new TableCell<MessageRow, Date>() {
             @Override
@@ -135,7 +162,7 @@ public class MessagePane {
             }
         });
         columnReceived.setComparator((Date date1, Date date2) -> {
-            // Sort date from new to old.
+            // Sort date from new to old, only used for tables without lazy items (see getIndexSort).
             if (date1 == null && date2 == null) {
                 return 0;
             } else if (date1 == null) {
@@ -145,6 +172,29 @@ public class MessagePane {
             }
             return date2.compareTo(date1);
         });
+        sortFields.put(columnFrom, IndexMessageFactory.ROW_FROM);
+        sortFields.put(columnSubject, IndexMessageFactory.ROW_SUBJECT);
+        sortFields.put(columnReceived, IndexMessageFactory.ROW_RECEIVED);
+        sortFields.put(columnSize, IndexMessageFactory.ROW_SIZE);
+
+        table.setSortPolicy(param -> {
+            if (lazyItems == null || table.getItems() != lazyItems) {
+                return TableView.DEFAULT_SORT_POLICY.call(param);
+            }
+
+            try {
+                if (onIndexSort != null) {
+                    // The owner of the items queries them again, in the new order.
+                    onIndexSort.accept(getIndexSort());
+                } else if (getIndexSort() != null) {
+                    lazyItems.sort(getIndexSort());
+                }
+                return true;
+            } catch (RuntimeException ex) {
+                log.error(ex.getMessage(), ex);
+                return false;
+            }
+        });
         columnBookmark.setCellFactory((TableColumn<MessageRow, Boolean> param) -> {
             CheckBoxTableCell<MessageRow, Boolean> tableCell = new CheckBoxTableCell<>();
 
@@ -161,6 +211,7 @@ public class MessagePane {
         table.getColumns().add(columnCC);
         table.getColumns().add(columnTag);
         table.getColumns().add(columnBookmark);
+        table.getColumns().add(columnCopies);
 
         table.setPlaceholder(new Label("No messages added."));
         table.setEditable(true);
@@ -213,8 +264,13 @@ public class MessagePane {
         selectedText.textProperty().bind(Bindings.format("Selected: %s/%s", selectedAmount, maximumAmount));
 
         // Listeners
-        table.getItems().addListener((ListChangeListener.Change<? extends MessageRow> change) -> {
-            maximumAmount.set(table.getItems().size());
+        ListChangeListener<MessageRow> itemsListener = change -> maximumAmount.set(table.getItems().size());
+
+        table.getItems().addListener(itemsListener);
+        table.itemsProperty().addListener((observable, oldItems, newItems) -> {
+            oldItems.removeListener(itemsListener);
+            newItems.addListener(itemsListener);
+            maximumAmount.set(newItems.size());
         });
         table.getSelectionModel().getSelectedItems().addListener((ListChangeListener.Change<? extends MessageRow> change) -> {
             selectedAmount.set(table.getSelectionModel().getSelectedItems().size());
@@ -382,6 +438,49 @@ public class MessagePane {
         alert.show();
     }
 
+    /**
+     * @return The sort order of the table, by the doc values of the index. Null if the table isn't sorted.
+     */
+    public Sort getIndexSort() {
+        if (table.getSortOrder().isEmpty()) {
+            return null;
+        }
+
+        // Only the first sort column is used.
+        TableColumn<MessageRow, ?> column = table.getSortOrder().get(0);
+        String field = sortFields.get(column);
+
+        if (field == null) {
+            return null;
+        }
+
+        boolean descending = column.getSortType() == TableColumn.SortType.DESCENDING;
+
+        if (field.equals(IndexMessageFactory.ROW_RECEIVED)) {
+            // Sort date from new to old, like the comparator.
+            descending = !descending;
+        }
+        return SearchModel.createSort(field, descending);
+    }
+
+    /**
+     * Replaces the items of the table with lazy items, only the index fields can be sorted by.
+     * The sort order is kept, the items are expected to be in that order already.
+     */
+    public void setLazyItems(LazyMessageList lazyItems) {
+        this.lazyItems = lazyItems;
+
+        table.getColumns().forEach(column -> column.setSortable(sortFields.containsKey(column)));
+        table.setItems(lazyItems);
+    }
+
+    /**
+     * Shows or hides the column with the amount of copies of each message.
+     */
+    public void setCopiesShown(boolean shown) {
+        columnCopies.setVisible(shown);
+    }
+
     public void setLoading(boolean loading) {
         if (loading) {
             table.setCursor(Cursor.WAIT);
@@ -25,6 +25,8 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 import javax.swing.SwingUtilities;
@@ -64,6 +66,11 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class MessagePaneController {
 
+    /**
+     * The amount of rows above and below the selected row which are prefetched.
+     */
+    private static final int PREFETCH_ROWS = 2;
+
     private MessagePane messagePane;
     private MessageFactory messageFactory;
     private @Getter DefaultContextMenu defaultContextMenu;
@@ -106,10 +113,30 @@ public class MessagePaneController {
                         }
                     }
                 });
+
+                prefetchNeighbours();
             }
         }
     }
 
+    /**
+     * Prefetches the messages around the selected row, so moving through the table is instant.
+     */
+    private void prefetchNeighbours() {
+        List<MessageRow> items = messagePane.getTable().getItems();
+        int selectedIndex = messagePane.getTable().getSelectionModel().getSelectedIndex();
+        List<String> ids = new ArrayList<>();
+
+        for (int distance = 1; distance <= PREFETCH_ROWS; distance++) {
+            if (selectedIndex + distance < items.size()) ids.add(items.get(selectedIndex + distance).getId());
+            if (selectedIndex - distance >= 0) ids.add(items.get(selectedIndex - distance).getId());
+        }
+
+        if (!ids.isEmpty()) {
+            messageFactory.prefetch(ids);
+        }
+    }
+
     /**
      * Handles the body engine's events.
      */
@@ -230,7 +257,10 @@ public class MessagePaneController {
 
                     try {
                         outputFile.deleteOnExit();
-                        Files.copy(selectedRow.getInputStream(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+                        try (InputStream inputStream = selectedRow.openInputStream()) {
+                            Files.copy(inputStream, outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                        }
 
                         SwingUtilities.invokeLater(() -> {
                             try {
@@ -240,8 +270,6 @@ public class MessagePaneController {
                                 messagePane.displayError("Failed to open attachment: " + ex.getMessage());
                             }
                         });
-
-                        selectedRow.getInputStream().reset(); // Important!
                     } catch (IOException ex) {
                         log.error(ex.getMessage(), ex);
                         messagePane.displayError("Failed to copy attachment: " + ex.getMessage());
@@ -23,7 +23,10 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import com.github.email4n6.model.message.MessageRow;
 import com.zaxxer.hikari.HikariDataSource;
@@ -106,6 +109,37 @@ public class BookmarksModel {
         }
     }
 
+    /**
+     * Looks up which of the IDs are bookmarks, using a single query.
+     *
+     * @return The IDs which are bookmarks.
+     */
+    public Set<String> getBookmarks(Collection<String> ids) {
+        Set<String> bookmarks = new HashSet<>();
+
+        if (ids.isEmpty()) {
+            return bookmarks;
+        }
+
+        try {
+            @Cleanup Connection connection = database.getConnection();
+            @Cleanup PreparedStatement statement = connection.prepareStatement(
+                    "SELECT id FROM Bookmarks WHERE id IN (SELECT x FROM TABLE(x VARCHAR(100) = ?))"
+            );
+
+            statement.setObject(1, ids.toArray());
+            @Cleanup ResultSet resultSet = statement.executeQuery();
+
+            while (resultSet.next()) {
+                bookmarks.add(resultSet.getString("ID"));
+            }
+            connection.commit();
+        } catch (SQLException ex) {
+            log.error(ex.getMessage(), ex);
+        }
+        return bookmarks;
+    }
+
     /**
      * Adds a bookmark.
      */
@@ -21,6 +21,9 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.h2.jdbc.JdbcSQLException;
 
@@ -68,6 +71,37 @@ public class TagModel {
         }
     }
 
+    /**
+     * Looks up the tags of the IDs, using a single query.
+     *
+     * @return A map of IDs to their tag, IDs without a tag are left out.
+     */
+    public Map<String, String> getTags(Collection<String> ids) {
+        Map<String, String> tags = new HashMap<>();
+
+        if (ids.isEmpty()) {
+            return tags;
+        }
+
+        try {
+            @Cleanup Connection connection = database.getConnection();
+            @Cleanup PreparedStatement statement = connection.prepareStatement(
+                    "SELECT id, tag FROM Tags WHERE id IN (SELECT x FROM TABLE(x VARCHAR(100) = ?))"
+            );
+
+            statement.setObject(1, ids.toArray());
+            @Cleanup ResultSet resultSet = statement.executeQuery();
+
+            while (resultSet.next()) {
+                tags.put(resultSet.getString("ID"), resultSet.getString("Tag"));
+            }
+            connection.commit();
+        } catch (SQLException ex) {
+            log.error(ex.getMessage(), ex);
+        }
+        return tags;
+    }
+
     /**
      * Sets the tag of the ID.
      *
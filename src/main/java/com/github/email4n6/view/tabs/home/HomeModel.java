@@ -28,9 +28,12 @@ import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.github.email4n6.model.Case;
+import com.github.email4n6.model.ConversationIndex;
+import com.github.email4n6.model.SearcherService;
 import com.github.email4n6.model.Settings;
 import com.github.email4n6.model.parser.FileParser;
 import com.github.email4n6.model.parser.ParserFactory;
+import com.github.email4n6.model.parser.ProgressReporter;
 import com.github.email4n6.utils.PathUtils;
 import com.github.email4n6.view.tabs.home.loading.LoadingStage;
 import com.google.gson.Gson;
@@ -38,7 +41,6 @@ import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
 import javafx.application.Platform;
-import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.stage.Window;
@@ -75,10 +77,23 @@ public class HomeModel {
     private @Setter EventHandler<ActionEvent> onActiveCaseClosed;
 
     /**
-     * Opens the case and initializes shared objects related to it.
+     * Opens the case and shows the parsing progress in a loading stage.
      * The case will be created if it doesn't yet exist.
      */
     void openCase(Case caseObject, Window ownerWindow) {
+        LoadingStage loadingStage = new LoadingStage(ownerWindow);
+
+        loadingStage.show();
+        openCase(caseObject, loadingStage);
+    }
+
+    /**
+     * Opens the case and initializes shared objects related to it.
+     * The case will be created if it doesn't yet exist.
+     *
+     * @param progressReporter Shows the parsing progress, also used without a GUI.
+     */
+    public void openCase(Case caseObject, ProgressReporter progressReporter) {
         log.info("Opening case \"{}\"...", caseObject.getName());
 
         if (currentCase != null) {
@@ -107,6 +122,19 @@ public class HomeModel {
             // Set default settings.
             Settings.set(caseObject.getName(), "date_format", "EEE, d MMM yyyy HH:mm:ss");
             Settings.set(caseObject.getName(), "search_limit", "100");
+            Settings.set(caseObject.getName(), "pipeline_read_threads", "" + Runtime.getRuntime().availableProcessors());
+            Settings.set(caseObject.getName(), "max_parallel_sources", "" + Runtime.getRuntime().availableProcessors());
+            Settings.set(caseObject.getName(), "checkpoint_documents", "50000");
+            Settings.set(caseObject.getName(), "checkpoint_seconds", "300");
+            Settings.set(caseObject.getName(), "index_profile", "default");
+            Settings.set(caseObject.getName(), "pst_io_mode", "memory-mapped");
+            Settings.set(caseObject.getName(), "pst_io_block_size", "64");
+            Settings.set(caseObject.getName(), "pst_io_cache_blocks", "256");
+            Settings.set(caseObject.getName(), "message_cache_mb", "64");
+            Settings.set(caseObject.getName(), "pipeline_report_render_queue_depth", "100");
+            Settings.set(caseObject.getName(), "attachment_extraction", "true");
+            Settings.set(caseObject.getName(), "attachment_extraction_max_kb", "4096");
+            Settings.set(caseObject.getName(), "attachment_extraction_timeout_millis", "10000");
 
             try {
                 @Cleanup Connection connection = database.getConnection();
@@ -121,41 +149,31 @@ public class HomeModel {
         }
 
         // Process the sources of this case using the FileParser.
-        LoadingStage loadingStage = new LoadingStage(ownerWindow);
-
         ParserFactory parserFactory = new ParserFactory();
-        FileParser fileParser = new FileParser(parserFactory, caseObject, loadingStage);
+        FileParser fileParser = new FileParser(parserFactory, caseObject, progressReporter);
 
-        loadingStage.show();
+        new Thread(() -> {
+            if (caseObject.getSize().equals("Not calculated yet.")) {
+                // Update the source size.
+                progressReporter.setStatus("Calculating the size of the source(s)...");
+                log.debug("Calculating the size of the source(s)...");
 
-        new Thread(new Task<Void>() {
+                String sourceSize = getSourceSize(caseObject.getSources(), caseObject.isSubFolders());
+                caseObject.setSize(sourceSize);
+                persistCase(caseObject);
 
-            @Override
-            protected Void call() {
-                if (caseObject.getSize().equals("Not calculated yet.")) {
-                    // Update the source size.
-                    loadingStage.setStatus("Calculating the size of the source(s)...");
-                    log.debug("Calculating the size of the source(s)...");
-
-                    String sourceSize = getSourceSize(caseObject.getSources(), caseObject.isSubFolders());
-                    caseObject.setSize(sourceSize);
-                    persistCase(caseObject);
-
-                    loadingStage.setStatus("Waiting for parsers to finish...");
-                    log.debug("Source(s) size: {}", sourceSize);
-                }
-
-                File firstSource = new File(caseObject.getSources().iterator().next());
+                progressReporter.setStatus("Waiting for parsers to finish...");
+                log.debug("Source(s) size: {}", sourceSize);
+            }
 
-                fileParser.setOnParsingFinished(onFinishedParsing);
+            File firstSource = new File(caseObject.getSources().iterator().next());
 
-                if (firstSource.isDirectory()) {
-                    fileParser.parseFolder(firstSource.getPath(), caseObject.isSubFolders());
-                } else {
-                    fileParser.parseFiles(caseObject.getSources());
-                }
+            fileParser.setOnParsingFinished(onFinishedParsing);
 
-                return null;
+            if (firstSource.isDirectory()) {
+                fileParser.parseFolder(firstSource.getPath(), caseObject.isSubFolders());
+            } else {
+                fileParser.parseFiles(caseObject.getSources());
             }
         }).start();
     }
@@ -166,6 +184,8 @@ public class HomeModel {
     private void closeCase() {
         onActiveCaseClosed.handle(null);
         database.close();
+        SearcherService.close(currentCase.getName());
+        ConversationIndex.close(currentCase.getName());
     }
 
     /**
@@ -203,7 +223,7 @@ public class HomeModel {
     /**
      * @return True if the case exists.
      */
-    boolean isExistingCase(String caseName) {
+    public boolean isExistingCase(String caseName) {
         return new File(PathUtils.getCasePath(caseName) + File.separator + "case.json").exists();
     }
 
@@ -226,7 +246,7 @@ public class HomeModel {
     /**
      * @return The case object of the given case name.
      */
-    Case getCaseObject(String caseName) {
+    public Case getCaseObject(String caseName) {
         try {
             String jsonObject = Files.newBufferedReader(
                     Paths.get(PathUtils.getCasePath(caseName) + File.separator + "case.json")
@@ -18,24 +18,34 @@
 package com.github.email4n6.view.tabs.home.loading;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import com.github.email4n6.model.Version;
+import com.github.email4n6.model.parser.ParserTask;
+import com.github.email4n6.model.parser.ProgressReporter;
 import com.github.email4n6.view.tabs.home.loading.taskprogress.TaskProgressView;
 import com.github.email4n6.view.tabs.tree.TreeObject;
 
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Platform;
 import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonType;
 import javafx.scene.control.Label;
 import javafx.scene.control.TreeItem;
 import javafx.scene.layout.BorderPane;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.stage.Window;
+import javafx.util.Duration;
 import lombok.Getter;
 
 /**
@@ -44,7 +54,12 @@ import lombok.Getter;
  *
  * @author Marten4n6
  */
-public class LoadingStage {
+public class LoadingStage implements ProgressReporter {
+
+    /**
+     * How often the progress of running tasks is shown, in milliseconds.
+     */
+    private static final int SAMPLE_INTERVAL = 250;
 
     /**
      * Parsers append their tree to this list, used by the tree tab.
@@ -56,10 +71,17 @@ public class LoadingStage {
     private TaskProgressView progressView;
 
     private ExecutorService executorService;
+    private List<ParserTaskAdapter> runningTasks;
+    private Timeline sampleTimeline;
+
+    /**
+     * Every added task, the tasks which failed or couldn't index every item are shown once loading finished.
+     */
+    private final List<ParserTask<?>> parserTasks = new CopyOnWriteArrayList<>();
 
     public LoadingStage(Window ownerWindow) {
         stage = new Stage();
-        createdTreeItems = new ArrayList<>();
+        createdTreeItems = Collections.synchronizedList(new ArrayList<>());
 
         BorderPane sceneLayout = new BorderPane();
         Scene scene = new Scene(sceneLayout, 485, 255);
@@ -70,7 +92,15 @@ public class LoadingStage {
 
         // Task progress
         progressView = new TaskProgressView();
-        executorService = Executors.newSingleThreadExecutor();
+        executorService = Executors.newCachedThreadPool(); // The FileParser limits how many files are parsed at once.
+        runningTasks = new CopyOnWriteArrayList<>();
+
+        // Parsers only update counters, which are shown at a fixed rate.
+        sampleTimeline = new Timeline(new KeyFrame(Duration.millis(SAMPLE_INTERVAL), event -> {
+            runningTasks.forEach(ParserTaskAdapter::sample);
+        }));
+        sampleTimeline.setCycleCount(Animation.INDEFINITE);
+        sampleTimeline.play();
 
         // Layout
         sceneLayout.setTop(statusLabel);
@@ -94,14 +124,28 @@ public class LoadingStage {
     /**
      * Closes the loading stage.
      */
+    @Override
     public void shutdown() {
         executorService.shutdown();
-        Platform.runLater(() -> stage.close());
+        Platform.runLater(() -> {
+            sampleTimeline.stop();
+            stage.close();
+
+            long incompleteTasks = parserTasks.stream()
+                    .filter(task -> task.getException() != null || task.getFailures() > 0)
+                    .count();
+
+            if (incompleteTasks > 0) {
+                new Alert(Alert.AlertType.WARNING, incompleteTasks + " source(s) couldn't be read completely, see the log. " +
+                        "The missing parts are indexed again when the case is opened next time.", ButtonType.CLOSE).show();
+            }
+        });
     }
 
     /**
      * Sets the text of the status label.
      */
+    @Override
     public void setStatus(String message) {
         Platform.runLater(() -> statusLabel.setText("Status: " + message));
     }
@@ -109,10 +153,49 @@ public class LoadingStage {
     /**
      * Starts the task and adds it to the loading view.
      */
-    public void addTask(Task task) {
+    @Override
+    public void addTask(ParserTask<TreeItem<TreeObject>> parserTask) {
+        ParserTaskAdapter task = new ParserTaskAdapter(parserTask);
+
+        parserTask.setSucceededListener(createdTreeItems::add);
+        parserTasks.add(parserTask);
         progressView.getTasks().add(task);
-        task.setOnSucceeded((event) -> createdTreeItems.add((TreeItem<TreeObject>) task.getValue()));
+        runningTasks.add(task);
 
         executorService.submit(task);
     }
+
+    /**
+     * JavaFX task which the view is bound to, copies the progress of the parser task when sampled.
+     */
+    private class ParserTaskAdapter extends Task<TreeItem<TreeObject>> {
+
+        private final ParserTask<TreeItem<TreeObject>> parserTask;
+
+        ParserTaskAdapter(ParserTask<TreeItem<TreeObject>> parserTask) {
+            this.parserTask = parserTask;
+        }
+
+        @Override
+        protected TreeItem<TreeObject> call() {
+            try {
+                parserTask.run();
+            } finally {
+                runningTasks.remove(this);
+                sample();
+            }
+            return parserTask.getValue();
+        }
+
+        private void sample() {
+            updateTitle(parserTask.getTitle());
+
+            if (parserTask.getStages().isEmpty()) {
+                updateMessage(parserTask.getMessage());
+            } else {
+                updateMessage(parserTask.getMessage() + " - " + parserTask.getPipelineStatus());
+            }
+            updateProgress(parserTask.getWorkDone(), parserTask.getTotalWork());
+        }
+    }
 }
@@ -0,0 +1,98 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.view.tabs.search;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.SimpleCollector;
+
+import lombok.Getter;
+
+/**
+ * Counts the copies of every hit's message from the fingerprint doc values, without loading documents.
+ * Like the {@link FacetCollector}, hits are counted per segment ordinal.
+ *
+ * @author Marten4n6
+ */
+class DuplicateCollector extends SimpleCollector {
+
+    private final Map<String, Integer> copies = new HashMap<>();
+
+    /**
+     * The amount of hits without a fingerprint, each of these is unique.
+     */
+    private @Getter int unfingerprintedAmount;
+
+    private SortedDocValues fingerprints;
+    private int[] ordCounts;
+
+    @Override
+    protected void doSetNextReader(LeafReaderContext context) throws IOException {
+        countSegment();
+
+        fingerprints = context.reader().getSortedDocValues(SearchModel.FINGERPRINT);
+        ordCounts = fingerprints == null ? null : new int[fingerprints.getValueCount()];
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+        if (fingerprints != null && fingerprints.advanceExact(doc)) {
+            ordCounts[fingerprints.ordValue()]++;
+        } else {
+            unfingerprintedAmount++;
+        }
+    }
+
+    @Override
+    public boolean needsScores() {
+        return false;
+    }
+
+    /**
+     * @return The amount of hits per fingerprint.
+     */
+    Map<String, Integer> getCopies() throws IOException {
+        countSegment();
+        return copies;
+    }
+
+    /**
+     * @return The amount of hits, counting every copy once.
+     */
+    long getUniqueAmount() throws IOException {
+        return getCopies().size() + unfingerprintedAmount;
+    }
+
+    /**
+     * Adds the counts of the current segment.
+     */
+    private void countSegment() throws IOException {
+        if (fingerprints == null) return;
+
+        for (int ord = 0; ord < ordCounts.length; ord++) {
+            if (ordCounts[ord] > 0) {
+                copies.merge(fingerprints.lookupOrd(ord).utf8ToString(), ordCounts[ord], Integer::sum);
+            }
+        }
+        fingerprints = null;
+    }
+}
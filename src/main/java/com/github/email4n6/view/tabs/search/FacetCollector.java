@@ -0,0 +1,91 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.view.tabs.search;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.SimpleCollector;
+
+/**
+ * Counts the facets of every hit from the SortedSetDocValues, without loading documents.
+ * Hits are counted per segment ordinal, the ordinals are only looked up once per segment.
+ *
+ * @author Marten4n6
+ */
+class FacetCollector extends SimpleCollector {
+
+    private final FacetCounts facetCounts = new FacetCounts();
+
+    private SortedSetDocValues[] values = new SortedSetDocValues[FacetCounts.FACETS.size()];
+    private int[][] ordCounts = new int[FacetCounts.FACETS.size()][];
+
+    @Override
+    protected void doSetNextReader(LeafReaderContext context) throws IOException {
+        countSegment();
+
+        for (int i = 0; i < values.length; i++) {
+            // Null for segments without this facet.
+            values[i] = context.reader().getSortedSetDocValues(FacetCounts.FACETS.get(i));
+            ordCounts[i] = values[i] == null ? null : new int[(int) values[i].getValueCount()];
+        }
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null && values[i].advanceExact(doc)) {
+                long ord;
+
+                while ((ord = values[i].nextOrd()) != SortedSetDocValues.NO_MORE_ORDS) {
+                    ordCounts[i][(int) ord]++;
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean needsScores() {
+        return false;
+    }
+
+    /**
+     * @return The counts of all collected hits.
+     */
+    FacetCounts getFacetCounts() throws IOException {
+        countSegment();
+        return facetCounts;
+    }
+
+    /**
+     * Adds the counts of the current segment.
+     */
+    private void countSegment() throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) continue;
+
+            for (int ord = 0; ord < ordCounts[i].length; ord++) {
+                if (ordCounts[i][ord] > 0) {
+                    facetCounts.add(FacetCounts.FACETS.get(i), values[i].lookupOrd(ord).utf8ToString(), ordCounts[i][ord]);
+                }
+            }
+            values[i] = null;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.view.tabs.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The amount of search hits per value of each facet.
+ * Facets are indexed as a (not analyzed) string field and SortedSetDocValues, so they
+ * can be counted without loading documents and searched with "facet_type:appointment".
+ *
+ * @author Marten4n6
+ */
+public class FacetCounts {
+
+    public static final String SENDER = "facet_sender";
+    public static final String RECIPIENT_DOMAIN = "facet_recipient_domain";
+    public static final String FOLDER = "facet_folder";
+    public static final String TYPE = "facet_type";
+    public static final String MONTH = "facet_month";
+
+    /**
+     * All facets, in the order they're shown.
+     */
+    public static final List<String> FACETS = Collections.unmodifiableList(Arrays.asList(
+            SENDER, RECIPIENT_DOMAIN, FOLDER, TYPE, MONTH
+    ));
+
+    private final Map<String, Map<String, Integer>> counts = new HashMap<>();
+
+    FacetCounts() {
+        FACETS.forEach(facet -> counts.put(facet, new HashMap<>()));
+    }
+
+    void add(String facet, String value, int count) {
+        counts.get(facet).merge(value, count, Integer::sum);
+    }
+
+    /**
+     * @return The values with the most hits first, the month histogram is sorted by month instead.
+     */
+    public List<Map.Entry<String, Integer>> getTop(String facet, int maxValues) {
+        List<Map.Entry<String, Integer>> values = new ArrayList<>(counts.get(facet).entrySet());
+
+        if (facet.equals(MONTH)) {
+            values.sort(Map.Entry.comparingByKey());
+        } else {
+            values.sort(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        }
+        return values.size() > maxValues ? values.subList(0, maxValues) : values;
+    }
+}
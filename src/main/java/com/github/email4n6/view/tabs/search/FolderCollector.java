@@ -0,0 +1,89 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.view.tabs.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.util.ArrayUtil;
+
+/**
+ * Collects every hit of a folder listing without scoring or sorting them, in index order.
+ * The message IDs are read from the "id" doc values instead of the stored fields;
+ * hits of documents indexed without doc values get a null ID.
+ *
+ * @author Marten4n6
+ */
+class FolderCollector extends SimpleCollector {
+
+    private int[] docs = new int[64];
+    private int count;
+    private final List<String> ids = new ArrayList<>();
+
+    private int docBase;
+    private SortedDocValues idValues;
+
+    @Override
+    protected void doSetNextReader(LeafReaderContext context) throws IOException {
+        docBase = context.docBase;
+        // Null for segments written before the doc values were added.
+        idValues = context.reader().getSortedDocValues("id");
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+        docs = ArrayUtil.grow(docs, count + 1);
+        docs[count++] = docBase + doc;
+
+        if (idValues != null && idValues.advanceExact(doc)) {
+            ids.add(idValues.binaryValue().utf8ToString());
+        } else {
+            ids.add(null);
+        }
+    }
+
+    @Override
+    public boolean needsScores() {
+        return false;
+    }
+
+    /**
+     * @return The amount of collected hits.
+     */
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * @return The (index wide) document number of the hit.
+     */
+    int getDoc(int index) {
+        return docs[index];
+    }
+
+    /**
+     * @return The message ID of the hit, null if the document has no "id" doc values.
+     */
+    String getID(int index) {
+        return ids.get(index);
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.view.tabs.search;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.IndexOrDocValuesQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+
+/**
+ * Query parser which turns dates and sizes into point queries, for example:
+ * <pre>
+ * received:[2009-01-01 TO 2009-06-30]
+ * received:2009-07-01
+ * size:[1000000 TO *]
+ * facet_sender:"someone@example.com"
+ * </pre>
+ * Dates are either yyyy-MM-dd or yyyy-MM-ddTHH:mm[:ss] in the local time zone, an inclusive end date
+ * without a time includes the whole day. Sizes are in bytes. Facets are matched exactly (case insensitive).
+ * Every other field is parsed as usual.
+ *
+ * @author Marten4n6
+ */
+class MessageQueryParser extends QueryParser {
+
+    /**
+     * Fields indexed as a LongPoint of the time in milliseconds, with doc values.
+     */
+    static final Set<String> DATE_FIELDS = new HashSet<>(Arrays.asList(
+            "received_time", "submit_time", "start_time", "end_time"
+    ));
+
+    /**
+     * Fields indexed as a LongPoint, with doc values.
+     */
+    static final Set<String> NUMERIC_FIELDS = new HashSet<>(Arrays.asList("size"));
+
+    /**
+     * Shorter names of the date fields.
+     */
+    private static final Map<String, String> ALIASES = new HashMap<>();
+
+    static {
+        ALIASES.put("received", "received_time");
+        ALIASES.put("sent", "submit_time");
+        ALIASES.put("start", "start_time");
+        ALIASES.put("end", "end_time");
+    }
+
+    MessageQueryParser() {
+        super("searchable_text", new StandardAnalyzer());
+    }
+
+    /**
+     * @return The query narrowed down to the messages with the facet value, the value is matched exactly.
+     */
+    static String drillDown(String query, String facet, String value) {
+        // Only a backslash and a quote are special inside a phrase.
+        String escapedValue = value.replace("\\", "\\\\").replace("\"", "\\\"");
+
+        return "(" + query + ") AND " + facet + ":\"" + escapedValue + "\"";
+    }
+
+    @Override
+    protected Query getRangeQuery(String field, String part1, String part2, boolean startInclusive, boolean endInclusive) throws ParseException {
+        String pointField = ALIASES.getOrDefault(field, field);
+
+        if (DATE_FIELDS.contains(pointField)) {
+            // An inclusive end date includes that day, an exclusive start date excludes it.
+            long lower = part1 == null ? Long.MIN_VALUE : parseDate(part1, !startInclusive);
+            long upper = part2 == null ? Long.MAX_VALUE : parseDate(part2, endInclusive);
+
+            return createRangeQuery(pointField, lower, upper, startInclusive || part1 == null, endInclusive || part2 == null);
+        } else if (NUMERIC_FIELDS.contains(pointField)) {
+            long lower = part1 == null ? Long.MIN_VALUE : parseNumber(part1);
+            long upper = part2 == null ? Long.MAX_VALUE : parseNumber(part2);
+
+            return createRangeQuery(pointField, lower, upper, startInclusive || part1 == null, endInclusive || part2 == null);
+        }
+        return super.getRangeQuery(field, part1, part2, startInclusive, endInclusive);
+    }
+
+    @Override
+    protected Query getFieldQuery(String field, String queryText, boolean quoted) throws ParseException {
+        String pointField = ALIASES.getOrDefault(field, field);
+
+        if (DATE_FIELDS.contains(pointField)) {
+            // A date without a time matches the whole day.
+            return createRangeQuery(pointField, parseDate(queryText, false), parseDate(queryText, true), true, true);
+        } else if (NUMERIC_FIELDS.contains(pointField)) {
+            long value = parseNumber(queryText);
+
+            return createRangeQuery(pointField, value, value, true, true);
+        } else if (FacetCounts.FACETS.contains(field)) {
+            // Facets aren't analyzed.
+            return new TermQuery(new Term(field, queryText.toLowerCase()));
+        }
+        return super.getFieldQuery(field, queryText, quoted);
+    }
+
+    /**
+     * Uses the points or the doc values, whichever is faster for the rest of the query.
+     */
+    private Query createRangeQuery(String field, long lower, long upper, boolean lowerInclusive, boolean upperInclusive) {
+        if (!lowerInclusive) lower = lower == Long.MAX_VALUE ? lower : lower + 1;
+        if (!upperInclusive) upper = upper == Long.MIN_VALUE ? upper : upper - 1;
+
+        return new IndexOrDocValuesQuery(
+                LongPoint.newRangeQuery(field, lower, upper),
+                NumericDocValuesField.newSlowRangeQuery(field, lower, upper)
+        );
+    }
+
+    /**
+     * @param end True to return the end of the day, if the date has no time.
+     * @return The date in milliseconds.
+     */
+    private long parseDate(String text, boolean end) throws ParseException {
+        try {
+            if (text.contains("T")) {
+                return LocalDateTime.parse(text).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            }
+
+            LocalDate date = LocalDate.parse(text);
+
+            if (end) {
+                return date.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli() - 1;
+            }
+            return date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException ex) {
+            throw new ParseException("Invalid date \"" + text + "\", expected yyyy-MM-dd or yyyy-MM-ddTHH:mm:ss.");
+        }
+    }
+
+    private long parseNumber(String text) throws ParseException {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException ex) {
+            throw new ParseException("Invalid number \"" + text + "\", sizes are in bytes.");
+        }
+    }
+}
@@ -18,17 +18,18 @@
 package com.github.email4n6.view.tabs.search;
 
 import java.text.DecimalFormat;
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
-import org.apache.lucene.document.Document;
+import org.apache.lucene.search.Sort;
 
 import com.github.email4n6.model.Case;
 import com.github.email4n6.model.Settings;
 import com.github.email4n6.model.Version;
-import com.github.email4n6.model.message.MessageRow;
 import com.github.email4n6.model.message.factory.MessageFactory;
+import com.github.email4n6.view.messagepane.LazyMessageList;
 import com.github.email4n6.view.messagepane.MessagePaneController;
 
 import javafx.application.Platform;
@@ -51,7 +52,12 @@ public class SearchController {
     private SearchModel searchModel;
     private MessageFactory messageFactory;
 
-    private Task<List<MessageRow>> worker;
+    /**
+     * The amount of search results loaded at a time.
+     */
+    private static final int PAGE_SIZE = 250;
+
+    private Task<Void> worker;
 
     public SearchController(SearchTab searchTab, SearchModel searchModel, MessageFactory messageFactory) {
         this.searchTab = searchTab;
@@ -61,6 +67,15 @@ public class SearchController {
         // Catch events fired by the search tab.
         searchTab.setOnSearch(new SearchListener());
         searchTab.setOnSettingsClicked(new SettingsListener());
+
+        // Sorting the results searches again, the index returns the hits in the new order.
+        searchTab.getMessagePane().setOnIndexSort(sort -> Platform.runLater(() -> new SearchListener().handle(null)));
+
+        // Narrows the search down to a facet value.
+        searchTab.setOnDrillDown((facet, value) -> {
+            searchTab.setSearchQuery(MessageQueryParser.drillDown(searchTab.getSearchQuery(), facet, value));
+            searchTab.reload();
+        });
     }
 
     /**
@@ -74,19 +89,29 @@ public class SearchController {
             searchTab.getMessagePane().setLoading(true);
 
             if (worker != null && !worker.isDone()) {
-                // Stop previous search query.
+                // Stop previous search query, after it's current page.
                 log.debug("Stopping previous search query...");
 
-                worker.cancel(true);
+                worker.cancel(false);
             }
 
             searchTab.setLoading(true);
+            searchTab.setResultCount(0, -1);
+            searchTab.setFacets(null);
             searchTab.getMessagePane().clear();
-            searchTab.getMessagePane().getTable().getItems().clear();
 
-            worker = new Task<List<MessageRow>>() {
+            // Only the IDs of the results are kept, rows are created when they're shown.
+            LazyMessageList results = new LazyMessageList(messageFactory, searchModel);
+            searchTab.getMessagePane().setLazyItems(results);
+
+            Sort sort = searchTab.getMessagePane().getIndexSort();
+            boolean collapseDuplicates = searchTab.isCollapseDuplicates();
+
+            searchTab.getMessagePane().setCopiesShown(collapseDuplicates);
+
+            worker = new Task<Void>() {
                 @Override
-                protected List<MessageRow> call() {
+                protected Void call() {
                     log.info("Searching for: {}...", searchTab.getSearchQuery());
 
                     int searchLimit = Integer.parseInt(Settings.get(searchModel.getCaseName(), "search_limit"));
@@ -95,31 +120,61 @@ public class SearchController {
                         searchLimit = Integer.MAX_VALUE;
                     }
 
-                    List<MessageRow> messages = new ArrayList<>();
-                    long startTime = System.currentTimeMillis();
+                    SearchCursor cursor = searchModel.searchPaged(searchTab.getSearchQuery(), searchLimit, PAGE_SIZE, sort, collapseDuplicates);
+                    if (cursor == null) return null;
 
-                    for (Document document : searchModel.search(searchTab.getSearchQuery(), searchLimit)) {
-                        if (isCancelled()) {
-                            log.debug("Search query stopped.");
-                            return new ArrayList<>(0);
+                    long startTime = System.currentTimeMillis();
+                    int loadedAmount = 0;
+                    List<String> page;
+
+                    // Each page is added to the table while the next one loads.
+                    try {
+                        while (!isCancelled() && !(page = cursor.nextPage()).isEmpty()) {
+                            List<String> ids = page;
+                            loadedAmount += ids.size();
+
+                            int loaded = loadedAmount;
+                            // Counted while loading the first page.
+                            FacetCounts facetCounts = loaded == ids.size() ? cursor.getFacetCounts() : null;
+                            Map<String, Integer> copies = new HashMap<>();
+
+                            if (collapseDuplicates) {
+                                ids.forEach(id -> copies.put(id, cursor.getCopies(id)));
+                            }
+
+                            Platform.runLater(() -> {
+                                if (!isCancelled()) {
+                                    results.addIDs(ids, copies);
+                                    searchTab.setResultCount(loaded, cursor.getTotalHits());
+
+                                    if (facetCounts != null) searchTab.setFacets(facetCounts);
+                                }
+                            });
+
+                            if (loadedAmount == ids.size()) {
+                                log.debug("First page shown after {}ms, {} hits in total.", System.currentTimeMillis() - startTime, cursor.getTotalHits());
+                            }
                         }
-
-                        messages.add(messageFactory.getMessageRow(document.get("id")));
+                    } finally {
+                        cursor.close();
                     }
 
                     long endTime = System.currentTimeMillis();
                     String secondsTaken = new DecimalFormat("#0.00000").format((endTime - startTime) / 1000d);
 
-                    log.info("Returning {} result(s) after {}ms ({} seconds).", messages.size(), (endTime - startTime), secondsTaken);
-                    return messages;
+                    log.info("Returned {} result(s) after {}ms ({} seconds).", loadedAmount, (endTime - startTime), secondsTaken);
+                    return null;
                 }
 
                 @Override
                 protected void succeeded() {
-                    Platform.runLater(() -> {
-                        searchTab.getMessagePane().getTable().getItems().addAll(getValue());
-                        searchTab.setLoading(false);
-                    });
+                    searchTab.setLoading(false);
+                }
+
+                @Override
+                protected void failed() {
+                    log.error(getException().getMessage(), getException());
+                    searchTab.setLoading(false);
                 }
             };
 
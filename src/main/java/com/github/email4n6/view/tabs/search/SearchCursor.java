@@ -0,0 +1,210 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.view.tabs.search;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MultiCollector;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopDocsCollector;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.search.TopScoreDocCollector;
+
+import com.github.email4n6.model.SearcherService;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pages through the hits of a query, so the first hits can be shown before all are loaded.
+ * Only the message IDs of the current page are read, from the doc values. All pages are read from
+ * the same searcher, which is held until every hit is returned or the cursor is closed.
+ * <p>
+ * When collapsing duplicates only the first hit of every fingerprint is returned,
+ * the copies of all hits are counted while loading the first page.
+ *
+ * @author Marten4n6
+ */
+@Slf4j
+public class SearchCursor implements Closeable {
+
+    private final SearcherService searcherService;
+    private IndexSearcher searcher;
+    private final Query query;
+    private final Sort sort;
+    private final int pageSize;
+    private final boolean collapseDuplicates;
+
+    private int remainingHits;
+    private boolean exhausted;
+    private ScoreDoc lastHit;
+
+    /**
+     * The total amount of hits, known after the first page is loaded.
+     * When collapsing duplicates every copy of a message is counted once.
+     */
+    private @Getter long totalHits = -1;
+
+    /**
+     * The facets of all hits, counted while loading the first page.
+     */
+    private @Getter FacetCounts facetCounts;
+
+    /**
+     * The amount of copies per fingerprint and the fingerprints already returned, when collapsing duplicates.
+     */
+    private Map<String, Integer> copiesByFingerprint = Collections.emptyMap();
+    private final Set<String> returnedFingerprints = new HashSet<>();
+    private final Map<String, Integer> copiesByID = new HashMap<>();
+
+    SearchCursor(SearcherService searcherService, Query query, int maxHits, int pageSize, Sort sort, boolean collapseDuplicates) {
+        this.searcherService = searcherService;
+        this.query = query;
+        this.sort = sort;
+        this.remainingHits = maxHits;
+        this.pageSize = pageSize;
+        this.collapseDuplicates = collapseDuplicates;
+    }
+
+    /**
+     * @return The message IDs of the next page, empty once all hits are returned.
+     */
+    public List<String> nextPage() {
+        List<String> ids = new ArrayList<>();
+        int wanted = Math.min(pageSize, remainingHits);
+
+        try {
+            // Collapsed copies are skipped, so a page may take multiple searches.
+            while (ids.size() < wanted && !exhausted) {
+                if (searcher == null) {
+                    searcher = searcherService.acquire();
+                }
+
+                int requested = collapseDuplicates ? pageSize : wanted;
+                ScoreDoc[] hits = nextHits(requested).scoreDocs;
+
+                if (hits.length < requested) {
+                    exhausted = true;
+                }
+
+                int[] docs = new int[hits.length];
+
+                for (int i = 0; i < docs.length; i++) {
+                    docs[i] = hits[i].doc;
+                }
+
+                String[] pageIDs = SearchModel.readIDs(searcher, docs);
+                String[] fingerprints = collapseDuplicates ? SearchModel.readSortedValues(searcher, docs, SearchModel.FINGERPRINT) : null;
+
+                for (int i = 0; i < hits.length && ids.size() < wanted; i++) {
+                    lastHit = hits[i];
+
+                    if (fingerprints != null && fingerprints[i] != null) {
+                        if (!returnedFingerprints.add(fingerprints[i])) {
+                            continue; // A copy of a returned message.
+                        }
+                        copiesByID.put(pageIDs[i], copiesByFingerprint.getOrDefault(fingerprints[i], 1));
+                    }
+                    ids.add(pageIDs[i]);
+                }
+            }
+            remainingHits -= ids.size();
+        } catch (IOException ex) {
+            log.error(ex.getMessage(), ex);
+            remainingHits = 0;
+        }
+
+        if (remainingHits <= 0 || exhausted) {
+            close();
+        }
+        return ids;
+    }
+
+    /**
+     * @return The amount of copies of a returned message (including itself), 1 if duplicates aren't collapsed.
+     */
+    public int getCopies(String id) {
+        return copiesByID.getOrDefault(id, 1);
+    }
+
+    /**
+     * @return The hits following the last returned hit.
+     */
+    private TopDocs nextHits(int hits) throws IOException {
+        TopDocs topDocs;
+
+        if (totalHits == -1) {
+            topDocs = searchFirstPage(hits);
+        } else if (sort == null) {
+            topDocs = searcher.searchAfter(lastHit, query, hits);
+        } else {
+            // Sorted by the index, so the maximum applies to the sorted hits.
+            topDocs = searcher.searchAfter(lastHit, query, hits, sort);
+        }
+
+        if (!collapseDuplicates) {
+            totalHits = topDocs.totalHits;
+        }
+        return topDocs;
+    }
+
+    /**
+     * Collects the first page and counts the facets (and copies) of all hits, in the same pass.
+     */
+    private TopDocs searchFirstPage(int hits) throws IOException {
+        TopDocsCollector<?> topDocsCollector = sort == null
+                ? TopScoreDocCollector.create(hits)
+                : TopFieldCollector.create(sort, hits, true, false, false);
+        FacetCollector facetCollector = new FacetCollector();
+        DuplicateCollector duplicateCollector = collapseDuplicates ? new DuplicateCollector() : null;
+
+        searcher.search(query, MultiCollector.wrap(topDocsCollector, facetCollector, duplicateCollector));
+
+        facetCounts = facetCollector.getFacetCounts();
+
+        if (duplicateCollector != null) {
+            copiesByFingerprint = duplicateCollector.getCopies();
+            totalHits = duplicateCollector.getUniqueAmount();
+        }
+        return topDocsCollector.topDocs();
+    }
+
+    /**
+     * Releases the searcher, called automatically once every hit is returned.
+     */
+    @Override
+    public void close() {
+        if (searcher != null) {
+            searcherService.release(searcher);
+            searcher = null;
+        }
+        remainingHits = 0;
+    }
+}
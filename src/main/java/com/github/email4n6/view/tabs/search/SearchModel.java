@@ -17,27 +17,35 @@
  */
 package com.github.email4n6.view.tabs.search;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import lombok.Getter;
-import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.ParseException;
-import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.ConstantScoreQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.BytesRef;
 
-import com.github.email4n6.utils.PathUtils;
+import com.github.email4n6.model.SearcherService;
+import com.github.email4n6.model.message.factory.IndexMessageFactory;
 
 import javafx.application.Platform;
 import javafx.scene.control.Alert;
@@ -53,20 +61,20 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class SearchModel {
 
+    /**
+     * Identifies copies of the same message, indexed with doc values.
+     */
+    public static final String FINGERPRINT = "fingerprint";
+
     private @Getter String caseName;
 
-    private IndexSearcher searcher;
-    private QueryParser parser;
+    private SearcherService searcherService;
+    private MessageQueryParser parser;
 
     public SearchModel(String caseName) {
-        try {
-            this.caseName = caseName;
-            this.searcher = new IndexSearcher(DirectoryReader.open(FSDirectory.open(
-                            new File(PathUtils.getIndexPath(caseName)).toPath())));
-            this.parser = new QueryParser("searchable_text", new StandardAnalyzer());
-        } catch (IOException ex) {
-            log.error(ex.getMessage(), ex);
-        }
+        this.caseName = caseName;
+        this.searcherService = SearcherService.get(caseName);
+        this.parser = new MessageQueryParser();
     }
 
     /**
@@ -76,24 +84,11 @@ public class SearchModel {
      */
     public List<Document> search(String query, int maxHits) {
         try {
-            List<Document> documents = new ArrayList<>();
-
-            for (ScoreDoc hit : searcher.search(parser.parse(query), maxHits).scoreDocs) {
-                documents.add(searcher.doc(hit.doc));
-            }
-            return documents;
+            return searchDocuments(parser.parse(query), maxHits);
         } catch (ParseException | NullPointerException | IOException ex) {
             // TODO - Throw these exceptions and make the caller catch them.
             log.error(ex.getMessage());
-
-            Platform.runLater(() -> {
-                Alert alert = new Alert(Alert.AlertType.ERROR, "", ButtonType.CLOSE);
-                Label message = new Label(ex.getMessage());
-                message.setWrapText(true);
-
-                alert.getDialogPane().setContent(message);
-                alert.showAndWait();
-            });
+            displayError(ex);
             return new ArrayList<>(0);
         } catch (IllegalStateException ex) {
             log.error(ex.getMessage(), ex);
@@ -101,12 +96,80 @@ public class SearchModel {
         }
     }
 
+    /**
+     * @param query    The string to search for.
+     * @param maxHits  The maximum amount of hits returned by the cursor.
+     * @param pageSize The amount of hits per page.
+     * @return A cursor over the hits of the search query, null if the query is invalid.
+     */
+    public SearchCursor searchPaged(String query, int maxHits, int pageSize) {
+        return searchPaged(query, maxHits, pageSize, null);
+    }
+
+    /**
+     * @param query    The string to search for.
+     * @param maxHits  The maximum amount of hits returned by the cursor.
+     * @param pageSize The amount of hits per page.
+     * @param sort     The order of the hits (applied before the maximum), null to order by relevance.
+     * @return A cursor over the hits of the search query, null if the query is invalid.
+     * @see #createSort(String, boolean)
+     */
+    public SearchCursor searchPaged(String query, int maxHits, int pageSize, Sort sort) {
+        return searchPaged(query, maxHits, pageSize, sort, false);
+    }
+
+    /**
+     * @param query              The string to search for.
+     * @param maxHits            The maximum amount of hits returned by the cursor.
+     * @param pageSize           The amount of hits per page.
+     * @param sort               The order of the hits (applied before the maximum), null to order by relevance.
+     * @param collapseDuplicates True to only return the first copy of each message, see {@link SearchCursor#getCopies(String)}.
+     * @return A cursor over the hits of the search query, null if the query is invalid.
+     */
+    public SearchCursor searchPaged(String query, int maxHits, int pageSize, Sort sort, boolean collapseDuplicates) {
+        try {
+            Query parsedQuery = parser.parse(query);
+
+            searcherService.maybeRefresh();
+            return new SearchCursor(searcherService, parsedQuery, maxHits, pageSize, sort, collapseDuplicates);
+        } catch (ParseException | NullPointerException ex) {
+            log.error(ex.getMessage());
+            displayError(ex);
+            return null;
+        }
+    }
+
+    /**
+     * @param query The string to parse, in the query parser syntax.
+     * @return The parsed query.
+     */
+    public Query parseQuery(String query) throws ParseException {
+        return parser.parse(query);
+    }
+
     /**
      * @param query   The query to search for.
      * @param maxHits The maximum amount of documents returned.
      * @return A list of documents of the search query.
      */
     public List<Document> search(Query query, int maxHits) {
+        try {
+            return searchDocuments(query, maxHits);
+        } catch (IOException ex) {
+            log.error(ex.getMessage(), ex);
+            return new ArrayList<>(0);
+        }
+    }
+
+    /**
+     * Same as {@link #search(Query, int)}, for callers which must tell a failed search apart from no results.
+     *
+     * @throws IOException If the index couldn't be read.
+     */
+    public List<Document> searchDocuments(Query query, int maxHits) throws IOException {
+        searcherService.maybeRefresh();
+        IndexSearcher searcher = searcherService.acquire();
+
         try {
             List<Document> documents = new ArrayList<>();
 
@@ -114,23 +177,227 @@ public class SearchModel {
                 documents.add(searcher.doc(hit.doc));
             }
             return documents;
+        } finally {
+            searcherService.release(searcher);
+        }
+    }
+
+    /**
+     * Lists a folder without scoring the hits or loading their documents.
+     *
+     * @param folderID The ID of the folder.
+     * @return The IDs of the messages in the folder, in index order.
+     */
+    public List<String> getFolderMessageIDs(String folderID) {
+        try {
+            IndexSearcher searcher = searcherService.acquire();
+
+            try {
+                FolderCollector collector = collectFolder(searcher, folderID);
+                List<String> ids = new ArrayList<>(collector.getCount());
+
+                for (int i = 0; i < collector.getCount(); i++) {
+                    String id = collector.getID(i);
+
+                    if (id == null) {
+                        // Indexed before the "id" doc values were added.
+                        id = searcher.doc(collector.getDoc(i), Collections.singleton("id")).get("id");
+                    }
+                    ids.add(id);
+                }
+                return ids;
+            } finally {
+                searcherService.release(searcher);
+            }
+        } catch (IOException ex) {
+            log.error(ex.getMessage(), ex);
+            return new ArrayList<>(0);
+        }
+    }
+
+    /**
+     * Lists a folder without scoring the hits, the documents are loaded in index order.
+     *
+     * @param folderID The ID of the folder.
+     * @return The documents of the messages in the folder.
+     */
+    public List<Document> getFolderDocuments(String folderID) {
+        try {
+            IndexSearcher searcher = searcherService.acquire();
+
+            try {
+                FolderCollector collector = collectFolder(searcher, folderID);
+                List<Document> documents = new ArrayList<>(collector.getCount());
+
+                for (int i = 0; i < collector.getCount(); i++) {
+                    documents.add(searcher.doc(collector.getDoc(i)));
+                }
+                return documents;
+            } finally {
+                searcherService.release(searcher);
+            }
         } catch (IOException ex) {
             log.error(ex.getMessage(), ex);
             return new ArrayList<>(0);
         }
     }
 
+    /**
+     * @param field      A row field of the {@link IndexMessageFactory} which has doc values: received, size, from or subject.
+     * @param descending True to sort from high to low.
+     * @return The sort order, messages without a value are placed last.
+     */
+    public static Sort createSort(String field, boolean descending) {
+        SortField sortField;
+
+        if (field.equals(IndexMessageFactory.ROW_RECEIVED) || field.equals(IndexMessageFactory.ROW_SIZE)) {
+            sortField = new SortField(field, SortField.Type.LONG, descending);
+            sortField.setMissingValue(descending ? Long.MIN_VALUE : Long.MAX_VALUE);
+        } else {
+            sortField = new SortField(field, SortField.Type.STRING, descending);
+            sortField.setMissingValue(descending ? SortField.STRING_FIRST : SortField.STRING_LAST);
+        }
+        return new Sort(sortField, SortField.FIELD_DOC);
+    }
+
+    /**
+     * Sorts messages by the doc values of the index, without loading their documents.
+     *
+     * @param ids  The IDs of the messages.
+     * @param sort The sort order.
+     * @return The sorted IDs, IDs which aren't indexed are placed last.
+     */
+    public List<String> sortIDs(List<String> ids, Sort sort) {
+        List<BytesRef> terms = new ArrayList<>(ids.size());
+        ids.forEach(id -> terms.add(new BytesRef(id)));
+
+        try {
+            IndexSearcher searcher = searcherService.acquire();
+
+            try {
+                long startTime = System.currentTimeMillis();
+                ScoreDoc[] hits = searcher.search(new TermInSetQuery("id", terms), Math.max(1, ids.size()), sort).scoreDocs;
+                int[] docs = new int[hits.length];
+
+                for (int i = 0; i < hits.length; i++) {
+                    docs[i] = hits[i].doc;
+                }
+
+                List<String> sortedIDs = new ArrayList<>(ids.size());
+                Collections.addAll(sortedIDs, readIDs(searcher, docs));
+
+                if (sortedIDs.size() < ids.size()) {
+                    Set<String> found = new HashSet<>(sortedIDs);
+
+                    ids.stream().filter(id -> !found.contains(id)).forEach(sortedIDs::add);
+                }
+
+                log.debug("Sorted {} messages by {} in {}ms.", ids.size(), sort, System.currentTimeMillis() - startTime);
+                return sortedIDs;
+            } finally {
+                searcherService.release(searcher);
+            }
+        } catch (IOException ex) {
+            log.error(ex.getMessage(), ex);
+            return ids;
+        }
+    }
+
+    /**
+     * Reads the message IDs of the documents from the "id" doc values, in the same order.
+     */
+    static String[] readIDs(IndexSearcher searcher, int[] docs) throws IOException {
+        String[] ids = readSortedValues(searcher, docs, "id");
+
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == null) {
+                // Indexed before the "id" doc values were added.
+                ids[i] = searcher.doc(docs[i], Collections.singleton("id")).get("id");
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Reads the SortedDocValues of the documents, in the same order.
+     *
+     * @return The values, null for documents without a value.
+     */
+    static String[] readSortedValues(IndexSearcher searcher, int[] docs, String field) throws IOException {
+        List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+        String[] values = new String[docs.length];
+
+        // Doc values must be read in document order.
+        Integer[] positions = new Integer[docs.length];
+
+        for (int i = 0; i < docs.length; i++) {
+            positions[i] = i;
+        }
+        Arrays.sort(positions, Comparator.comparingInt(position -> docs[position]));
+
+        LeafReaderContext leaf = null;
+        SortedDocValues docValues = null;
+
+        for (int position : positions) {
+            int doc = docs[position];
+
+            if (leaf == null || doc >= leaf.docBase + leaf.reader().maxDoc()) {
+                leaf = leaves.get(ReaderUtil.subIndex(doc, leaves));
+                docValues = leaf.reader().getSortedDocValues(field);
+            }
+
+            if (docValues != null && docValues.advanceExact(doc - leaf.docBase)) {
+                values[position] = docValues.binaryValue().utf8ToString();
+            }
+        }
+        return values;
+    }
+
+    private FolderCollector collectFolder(IndexSearcher searcher, String folderID) throws IOException {
+        long startTime = System.currentTimeMillis();
+        FolderCollector collector = new FolderCollector();
+
+        searcher.search(new ConstantScoreQuery(new TermQuery(new Term("folder_id", folderID))), collector);
+
+        log.debug("Collected {} messages of folder {} in {}ms.", collector.getCount(), folderID, System.currentTimeMillis() - startTime);
+        return collector;
+    }
+
     /**
      * @return A set of all indexed fields.
      */
     public Set<String> getIndexedFields() {
         Set<String> fields = new HashSet<>();
 
-        for (LeafReaderContext leafReaderContext : searcher.getIndexReader().leaves()) {
-            for (FieldInfo fieldInfo : leafReaderContext.reader().getFieldInfos()) {
-                fields.add(fieldInfo.name);
+        try {
+            IndexSearcher searcher = searcherService.acquire();
+
+            try {
+                for (LeafReaderContext leafReaderContext : searcher.getIndexReader().leaves()) {
+                    for (FieldInfo fieldInfo : leafReaderContext.reader().getFieldInfos()) {
+                        fields.add(fieldInfo.name);
+                    }
+                }
+            } finally {
+                searcherService.release(searcher);
             }
+        } catch (IOException ex) {
+            log.error(ex.getMessage(), ex);
         }
         return fields;
     }
+
+    /**
+     * Alerts the user that the search failed.
+     */
+    private void displayError(Exception ex) {
+        Platform.runLater(() -> {
+            Alert alert = new Alert(Alert.AlertType.ERROR, "", ButtonType.CLOSE);
+            Label message = new Label(ex.getMessage());
+            message.setWrapText(true);
+
+            alert.getDialogPane().setContent(message);
+            alert.showAndWait();
+        });
+    }
 }
@@ -17,6 +17,11 @@
  */
 package com.github.email4n6.view.tabs.search;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
 import com.github.email4n6.view.messagepane.MessagePane;
 
 import javafx.application.Platform;
@@ -24,15 +29,20 @@ import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.geometry.Insets;
 import javafx.scene.Cursor;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Hyperlink;
 import javafx.scene.control.Label;
+import javafx.scene.control.ScrollPane;
 import javafx.scene.control.Tab;
 import javafx.scene.control.TextField;
+import javafx.scene.control.TitledPane;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
@@ -49,10 +59,34 @@ public class SearchTab {
     private @Getter MessagePane messagePane;
 
     private TextField searchField;
+    private CheckBox collapseCheckBox;
+    private Label resultsLabel;
+    private VBox facetsBox;
+
+    /**
+     * The amount of values shown per facet, the month histogram is always shown completely.
+     */
+    private static final int FACET_VALUES = 10;
+
+    private static final Map<String, String> FACET_TITLES = new HashMap<>();
+
+    static {
+        FACET_TITLES.put(FacetCounts.SENDER, "Senders");
+        FACET_TITLES.put(FacetCounts.RECIPIENT_DOMAIN, "Recipient domains");
+        FACET_TITLES.put(FacetCounts.FOLDER, "Folders");
+        FACET_TITLES.put(FacetCounts.TYPE, "Types");
+        FACET_TITLES.put(FacetCounts.MONTH, "Received per month");
+    }
+
+    /**
+     * Returns the title of a folder ID, shown in the folder facet.
+     */
+    private @Setter Function<String, String> folderTitles = folderID -> folderID;
 
     // Listeners
     private @Setter EventHandler<ActionEvent> onSearch;
     private @Setter EventHandler<MouseEvent> onSettingsClicked;
+    private @Setter DrillDownEvent onDrillDown;
 
     /**
      * Initializes the search tab.
@@ -78,6 +112,8 @@ public class SearchTab {
         topLayout.setMaxWidth(Double.MAX_VALUE);
 
         searchField = new TextField();
+        collapseCheckBox = new CheckBox("Collapse duplicates");
+        resultsLabel = new Label();
         Label settingsLabel = new Label();
         ImageView settingsIcon = new ImageView(new Image(this.getClass().getResourceAsStream("/images/settings.png")));
 
@@ -85,15 +121,30 @@ public class SearchTab {
         settingsLabel.setCursor(Cursor.HAND);
 
         HBox.setHgrow(searchField, Priority.ALWAYS);
-        topLayout.getChildren().addAll(searchField, settingsLabel);
+        resultsLabel.setMaxHeight(Double.MAX_VALUE);
+        collapseCheckBox.setMaxHeight(Double.MAX_VALUE);
+        topLayout.getChildren().addAll(searchField, collapseCheckBox, resultsLabel, settingsLabel);
         BorderPane.setMargin(topLayout, new Insets(5, 0, 5, 5));
 
         // Listeners
         searchField.setOnAction((event) -> onSearch.handle(event));
         settingsLabel.setOnMouseClicked((event) -> onSettingsClicked.handle(event));
+        collapseCheckBox.setOnAction((event) -> {
+            if (!getSearchQuery().isEmpty()) reload();
+        });
+
+        // Facets
+        facetsBox = new VBox();
+        ScrollPane facetsPane = new ScrollPane(facetsBox);
+
+        facetsBox.setSpacing(3);
+        facetsPane.setFitToWidth(true);
+        facetsPane.setPrefWidth(220);
+        BorderPane.setMargin(facetsPane, new Insets(0, 5, 0, 5));
 
         // Add
         borderPane.setTop(topLayout);
+        borderPane.setLeft(facetsPane);
         borderPane.setCenter(messagePane.getPane());
     }
 
@@ -104,6 +155,20 @@ public class SearchTab {
         return searchField.getText();
     }
 
+    /**
+     * @return True if only one copy of each message should be shown.
+     */
+    boolean isCollapseDuplicates() {
+        return collapseCheckBox.isSelected();
+    }
+
+    /**
+     * Replaces the search query, without searching.
+     */
+    void setSearchQuery(String query) {
+        searchField.setText(query);
+    }
+
     /**
      * Reloads the search query.
      */
@@ -111,6 +176,37 @@ public class SearchTab {
         searchField.fireEvent(new ActionEvent());
     }
 
+    /**
+     * Shows the facets of the search results, clicking a value narrows the search down to it.
+     *
+     * @param facetCounts The facets, null clears them.
+     */
+    void setFacets(FacetCounts facetCounts) {
+        Platform.runLater(() -> {
+            facetsBox.getChildren().clear();
+
+            if (facetCounts == null) return;
+
+            for (String facet : FacetCounts.FACETS) {
+                List<Map.Entry<String, Integer>> values = facetCounts.getTop(facet, facet.equals(FacetCounts.MONTH) ? Integer.MAX_VALUE : FACET_VALUES);
+
+                if (values.isEmpty()) continue;
+
+                VBox valuesBox = new VBox();
+
+                for (Map.Entry<String, Integer> value : values) {
+                    String title = facet.equals(FacetCounts.FOLDER) ? folderTitles.apply(value.getKey()) : value.getKey();
+                    Hyperlink link = new Hyperlink(String.format("%s (%,d)", title, value.getValue()));
+
+                    link.setOnAction((event) -> onDrillDown.drillDown(facet, value.getKey()));
+                    valuesBox.getChildren().add(link);
+                }
+
+                facetsBox.getChildren().add(new TitledPane(FACET_TITLES.get(facet), valuesBox));
+            }
+        });
+    }
+
     public void setLoading(boolean loading) {
         Platform.runLater(() -> {
             if (loading) {
@@ -122,4 +218,24 @@ public class SearchTab {
             }
         });
     }
+
+    /**
+     * Shows how many of the search results are loaded.
+     *
+     * @param totalHits The total amount of hits, -1 clears the label.
+     */
+    void setResultCount(int loaded, long totalHits) {
+        Platform.runLater(() -> {
+            if (totalHits < 0) {
+                resultsLabel.setText("");
+            } else {
+                resultsLabel.setText(String.format("%,d of %,d results", loaded, totalHits));
+            }
+        });
+    }
+
+    public interface DrillDownEvent {
+
+        void drillDown(String facet, String value);
+    }
 }
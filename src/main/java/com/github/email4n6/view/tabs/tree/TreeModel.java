@@ -26,9 +26,9 @@ import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.locks.ReentrantLock;
 
-import com.github.email4n6.model.message.MessageRow;
 import com.github.email4n6.model.message.factory.MessageFactory;
 import com.github.email4n6.view.messagepane.MessagePane;
+import com.github.email4n6.view.tabs.search.SearchModel;
 
 import javafx.application.Platform;
 import javafx.concurrent.Task;
@@ -46,11 +46,13 @@ import lombok.extern.slf4j.Slf4j;
 public class TreeModel {
 
     private @Getter MessageFactory messageFactory;
+    private @Getter SearchModel searchModel;
     private @Getter List<TreeItem<TreeObject>> createdTreeItems;
     private @Setter CountDownLatch messagesAddedLatch; // Set before using since it can't be reused.
 
-    public TreeModel(MessageFactory messageFactory, List<TreeItem<TreeObject>> createdTreeItems) {
+    public TreeModel(MessageFactory messageFactory, SearchModel searchModel, List<TreeItem<TreeObject>> createdTreeItems) {
         this.messageFactory = messageFactory;
+        this.searchModel = searchModel;
         this.createdTreeItems = createdTreeItems;
     }
 
@@ -58,11 +60,12 @@ public class TreeModel {
      * Creates a task which retrieves all messages of the tree item and updates the message pane accordingly.
      */
     TreeRunnable createTreeTask(MessagePane messagePane, TreeItem<TreeObject> item, boolean remove) {
-        Task<List<MessageRow>> task = new Task<List<MessageRow>>() {
+        Task<List<String>> task = new Task<List<String>>() {
 
             @Override
-            protected List<MessageRow> call() {
-                return messageFactory.getMessagesFromTreeItem(item);
+            protected List<String> call() {
+                // Only the IDs are loaded, rows are created when they're shown.
+                return messageFactory.getMessageIDsFromTreeItem(item);
             }
 
             @Override
@@ -70,20 +73,25 @@ public class TreeModel {
                 Platform.runLater(() -> {
                     if (!isCancelled()) { // Don't do anything if this task was cancelled.
                         if (remove) {
-                            List<MessageRow> previousSelection = getValue();
+                            List<String> previousSelection = getValue();
 
                             if (previousSelection != null) {
-                                messagePane.getTable().getItems().removeAll(previousSelection);
+                                messagePane.setLazyItems(messagePane.getLazyItems().without(previousSelection));
                                 log.debug("Removed {} messages from the message pane.", previousSelection.size());
                             }
                         } else {
-                            List<MessageRow> folderMessages = getValue();
+                            List<String> folderMessages = getValue();
 
                             if (folderMessages == null) {
                                 // May return null if the tree item has no messages.
                             } else {
                                 try {
-                                    messagePane.getTable().getItems().addAll(folderMessages);
+                                    messagePane.getLazyItems().addIDs(folderMessages);
+
+                                    if (messagePane.getIndexSort() != null) {
+                                        // Keep the folders in the order of the table.
+                                        messagePane.getLazyItems().sort(messagePane.getIndexSort());
+                                    }
                                     log.debug("Added {} messages to the message pane.", folderMessages.size());
                                 } finally {
                                     if (messagesAddedLatch != null) {
@@ -0,0 +1,125 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.email4n6.utils.PathUtils;
+
+/**
+ * Tests that conversations are split again when the source of a reply is removed.
+ *
+ * @author Marten4n6
+ */
+public class ConversationIndexTest {
+
+    private String caseName;
+
+    @Before
+    public void setUp() {
+        caseName = "ConversationIndexTest-" + System.nanoTime();
+        new File(PathUtils.getCasePath(caseName)).mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        ConversationIndex.close(caseName);
+        PathUtils.getConversationFile(caseName).delete();
+        new File(PathUtils.getCasePath(caseName)).delete();
+    }
+
+    @Test
+    public void repliesJoinTheConversation() {
+        ConversationIndex conversationIndex = ConversationIndex.get(caseName);
+
+        conversationIndex.add("source1", 1, Collections.emptyList());
+        conversationIndex.add("source1", 2, Collections.singletonList(1L));
+        conversationIndex.add("source2", 3, Arrays.asList(2L, 4L));
+
+        assertEquals(set(1, 2, 3, 4), new HashSet<>(conversationIndex.getConversation(1)));
+        assertEquals(set(5), new HashSet<>(conversationIndex.getConversation(5)));
+    }
+
+    @Test
+    public void removedSourceSplitsTheConversation() {
+        ConversationIndex conversationIndex = ConversationIndex.get(caseName);
+
+        conversationIndex.add("source1", 1, Collections.emptyList());
+        conversationIndex.add("source2", 2, Collections.singletonList(1L));
+        conversationIndex.add("source3", 3, Collections.singletonList(1L));
+        conversationIndex.removeSource("source2");
+
+        assertEquals(set(1, 3), new HashSet<>(conversationIndex.getConversation(1)));
+        assertEquals(set(2), new HashSet<>(conversationIndex.getConversation(2)));
+
+        conversationIndex.clear();
+        assertEquals(set(1), new HashSet<>(conversationIndex.getConversation(1)));
+    }
+
+    @Test
+    public void conversationsAreSaved() {
+        ConversationIndex conversationIndex = ConversationIndex.get(caseName);
+
+        conversationIndex.add("source1", 1, Collections.emptyList());
+        conversationIndex.add("source2", 2, Collections.singletonList(1L));
+        ConversationIndex.close(caseName);
+
+        conversationIndex = ConversationIndex.get(caseName);
+        assertEquals(set(1, 2), new HashSet<>(conversationIndex.getConversation(2)));
+
+        conversationIndex.removeSource("source2");
+        ConversationIndex.close(caseName);
+
+        assertEquals(set(1), new HashSet<>(ConversationIndex.get(caseName).getConversation(1)));
+    }
+
+    @Test
+    public void unchangedIndexIsNotWritten() {
+        ConversationIndex conversationIndex = ConversationIndex.get(caseName);
+
+        conversationIndex.add("source1", 1, Collections.emptyList());
+        conversationIndex.save();
+
+        File file = PathUtils.getConversationFile(caseName);
+        file.setLastModified(0);
+
+        conversationIndex.save();
+        conversationIndex.removeSource("unknown");
+        conversationIndex.save();
+        assertEquals(0, file.lastModified());
+    }
+
+    private static Set<Long> set(long... keys) {
+        Set<Long> set = new HashSet<>();
+
+        for (long key : keys) {
+            set.add(key);
+        }
+        return set;
+    }
+}
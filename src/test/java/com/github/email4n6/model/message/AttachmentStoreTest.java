@@ -0,0 +1,117 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model.message;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that attachments are stored once and exported without rewriting their content.
+ *
+ * @author Marten4n6
+ */
+public class AttachmentStoreTest {
+
+    private Path folder;
+    private AttachmentStore attachmentStore;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("AttachmentStoreTest");
+        attachmentStore = new AttachmentStore(folder.resolve("attachments"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(folder)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void sameContentIsStoredOnce() throws IOException {
+        byte[] content = "attachment".getBytes();
+        AttachmentRow attachment = createAttachment(content);
+
+        Path storedFile = attachmentStore.store(attachment);
+
+        assertEquals(storedFile, attachmentStore.store(createAttachment(content)));
+        assertArrayEquals(content, Files.readAllBytes(storedFile));
+        assertEquals(1, countFiles(attachmentStore.getFolder()));
+        assertEquals("1 stored, 1 duplicates, 0 spooled to disk", attachmentStore.toString());
+
+        // The stream is reset, so it can be read again.
+        assertEquals(storedFile, attachmentStore.store(attachment));
+    }
+
+    @Test
+    public void largeAttachmentIsSpooledToDisk() throws IOException {
+        byte[] content = new byte[AttachmentStore.MEMORY_THRESHOLD * 3 + 1];
+        new Random(4).nextBytes(content);
+
+        Path storedFile = attachmentStore.store(createAttachment(content));
+
+        assertArrayEquals(content, Files.readAllBytes(storedFile));
+        assertEquals(1, countFiles(attachmentStore.getFolder()));
+        assertEquals("1 stored, 0 duplicates, 1 spooled to disk", attachmentStore.toString());
+    }
+
+    @Test
+    public void exportReplacesTheTarget() throws IOException {
+        byte[] content = "attachment".getBytes();
+        Path target = folder.resolve("exported.txt");
+
+        Files.write(target, "old".getBytes());
+        attachmentStore.export(createAttachment(content), target);
+        attachmentStore.export(createAttachment(content), target);
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertTrue(Files.isSameFile(target, attachmentStore.store(createAttachment(content))));
+        assertEquals(2, countFiles(folder)); // The target and the attachments folder, no temporary links.
+    }
+
+    private static AttachmentRow createAttachment(byte[] content) {
+        return AttachmentRow.builder()
+                .attachmentName("attachment.txt")
+                .size(content.length)
+                .contentOpener(() -> new ByteArrayInputStream(Arrays.copyOf(content, content.length)))
+                .build();
+    }
+
+    private static long countFiles(Path folder) throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            return files.count();
+        }
+    }
+}
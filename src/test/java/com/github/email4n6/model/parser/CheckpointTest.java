@@ -0,0 +1,114 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model.parser;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.email4n6.model.Indexer;
+import com.github.email4n6.model.SearcherService;
+import com.github.email4n6.model.Settings;
+import com.github.email4n6.utils.PathUtils;
+
+/**
+ * Tests that checkpoints only remember parts once they're committed.
+ *
+ * @author Marten4n6
+ */
+public class CheckpointTest {
+
+    private static final String SOURCE_ID = "source";
+
+    private String caseName;
+    private Indexer indexer;
+
+    @Before
+    public void setUp() {
+        caseName = "CheckpointTest-" + System.nanoTime();
+        new File(PathUtils.getCasePath(caseName)).mkdirs();
+        indexer = new Indexer(caseName);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        indexer.close();
+        SearcherService.close(caseName);
+        FileParserTest.deleteRecursively(new File(PathUtils.getCasePath(caseName)));
+    }
+
+    @Test
+    public void finishedPartIsDoneAfterCommit() {
+        Checkpoint checkpoint = Checkpoint.load(caseName, SOURCE_ID, indexer);
+
+        checkpoint.setFinished("folder1");
+        assertFalse(Checkpoint.load(caseName, SOURCE_ID, indexer).isDone("folder1"));
+
+        checkpoint.commit();
+
+        Checkpoint resumed = Checkpoint.load(caseName, SOURCE_ID, indexer);
+        assertTrue(resumed.isDone("folder1"));
+        assertFalse(resumed.isDone("folder2"));
+    }
+
+    @Test
+    public void commitsAfterDocumentInterval() {
+        Settings.set(caseName, "checkpoint_documents", "2");
+        Checkpoint checkpoint = Checkpoint.load(caseName, SOURCE_ID, indexer);
+
+        checkpoint.setFinished("folder1");
+        checkpoint.documentWritten();
+        assertFalse(Checkpoint.load(caseName, SOURCE_ID, indexer).isDone("folder1"));
+
+        checkpoint.documentWritten();
+        assertTrue(Checkpoint.load(caseName, SOURCE_ID, indexer).isDone("folder1"));
+    }
+
+    @Test
+    public void deletedCheckpointStartsOver() {
+        Checkpoint checkpoint = Checkpoint.load(caseName, SOURCE_ID, indexer);
+
+        checkpoint.setFinished("folder1");
+        checkpoint.commit();
+        Checkpoint.delete(caseName, SOURCE_ID);
+
+        assertFalse(Checkpoint.load(caseName, SOURCE_ID, indexer).isDone("folder1"));
+    }
+
+    @Test
+    public void truncatedCheckpointStartsOver() throws IOException {
+        Checkpoint checkpoint = Checkpoint.load(caseName, SOURCE_ID, indexer);
+
+        checkpoint.setFinished("folder1");
+        checkpoint.commit();
+
+        // Left behind by a process which was killed while writing.
+        File checkpointFile = new File(PathUtils.getCheckpointPath(caseName), SOURCE_ID + ".json");
+        Files.write(checkpointFile.toPath(), "[\"fold".getBytes(StandardCharsets.UTF_8));
+
+        assertFalse(Checkpoint.load(caseName, SOURCE_ID, indexer).isDone("folder1"));
+    }
+}
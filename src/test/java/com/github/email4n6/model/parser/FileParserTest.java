@@ -0,0 +1,364 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.email4n6.model.Case;
+import com.github.email4n6.model.Indexer;
+import com.github.email4n6.model.SearcherService;
+import com.github.email4n6.utils.PathUtils;
+import com.github.email4n6.view.tabs.tree.TreeObject;
+
+import javafx.event.ActionEvent;
+import javafx.scene.control.TreeItem;
+
+/**
+ * Tests which sources the FileParser skips, indexes again, deletes and resumes.
+ *
+ * @author Marten4n6
+ */
+public class FileParserTest {
+
+    @Rule
+    public TemporaryFolder sourceFolder = new TemporaryFolder();
+
+    private String caseName;
+    private PartParser parser;
+
+    @Before
+    public void setUp() {
+        caseName = "FileParserTest-" + System.nanoTime();
+        parser = new PartParser();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        SearcherService.close(caseName);
+        deleteRecursively(new File(PathUtils.getCasePath(caseName)));
+    }
+
+    @Test
+    public void unchangedSourceIsSkipped() throws IOException {
+        File source = createSource("a.part", "part1", "part2", "part3");
+
+        parse(source);
+        parse(source);
+
+        assertEquals(3, parser.writtenParts);
+        assertEquals(1, parser.skippedFiles);
+        assertEquals(3, countDocuments(null));
+    }
+
+    @Test
+    public void changedSourceIsIndexedAgain() throws IOException {
+        File source = createSource("a.part", "part1", "part2", "part3");
+
+        parse(source);
+        Files.write(source.toPath(), Arrays.asList("part1", "part4"), StandardCharsets.UTF_8);
+        source.setLastModified(source.lastModified() + 2000);
+        parse(source);
+
+        assertEquals(0, parser.skippedFiles);
+        assertEquals(2, countDocuments(null));
+        assertEquals(1, countDocuments(new Term("part", "part4")));
+        assertEquals(0, countDocuments(new Term("part", "part2")));
+    }
+
+    @Test
+    public void touchedSourceIsIndexedAgain() throws IOException {
+        File source = createSource("a.part", "part1", "part2", "part3");
+
+        parse(source);
+        source.setLastModified(source.lastModified() + 2000);
+        parse(source);
+
+        // The content may have changed outside the sampled parts, the previous documents are replaced.
+        assertEquals(0, parser.skippedFiles);
+        assertEquals(6, parser.writtenParts);
+        assertEquals(3, countDocuments(null));
+    }
+
+    @Test
+    public void truncatedManifestIndexesEverySourceAgain() throws IOException {
+        File source = createSource("a.part", "part1", "part2", "part3");
+
+        parse(source);
+        Files.write(PathUtils.getManifestFile(caseName).toPath(), "{\"".getBytes(StandardCharsets.UTF_8));
+        parse(source);
+
+        assertEquals(0, parser.skippedFiles);
+        assertEquals(3, countDocuments(null));
+        parse(source);
+        assertEquals(1, parser.skippedFiles);
+    }
+
+    @Test
+    public void removedSourceIsDeleted() throws IOException {
+        File source1 = createSource("a.part", "part1", "part2");
+        File source2 = createSource("b.part", "part3");
+
+        parse(source1, source2);
+        parse(source1);
+
+        assertEquals(2, countDocuments(null));
+        assertEquals(0, countDocuments(new Term("part", "part3")));
+    }
+
+    @Test
+    public void untrackedIndexIsDeleted() throws IOException {
+        // Indexed by an older version, before sources were tracked.
+        Indexer indexer = new Indexer(caseName);
+        Document document = new Document();
+
+        document.add(new StringField("id", "untracked", Field.Store.YES));
+        indexer.getIndexWriter().addDocument(document);
+        indexer.close();
+        assertEquals(1, countDocuments(null));
+
+        parse(createSource("a.part", "part1", "part2"));
+
+        assertEquals(2, countDocuments(null));
+        assertEquals(0, countDocuments(new Term("id", "untracked")));
+    }
+
+    @Test
+    public void interruptedSourceResumesFromCheckpoint() throws IOException {
+        File source = createSource("a.part", "part1", "part2", "part3");
+
+        parser.failAfterParts = 2;
+        parse(source);
+
+        assertEquals(2, parser.writtenParts);
+        assertEquals(2, countDocuments(null));
+
+        parser.failAfterParts = -1;
+        parse(source);
+
+        // Only the part which wasn't committed is written again.
+        assertEquals(3, parser.writtenParts);
+        assertEquals(3, countDocuments(null));
+        assertEquals(1, countDocuments(new Term("part", "part3")));
+
+        // Finished sources don't keep their checkpoint.
+        File[] checkpoints = new File(PathUtils.getCheckpointPath(caseName)).listFiles();
+        assertTrue(checkpoints == null || checkpoints.length == 0);
+
+        parse(source);
+        assertEquals(1, parser.skippedFiles);
+    }
+
+    @Test
+    public void unreadablePartIsIndexedAgain() throws IOException {
+        File source = createSource("a.part", "part1", "part2", "part3");
+
+        parser.unreadableParts.add("part2");
+        parse(source);
+
+        assertEquals(2, parser.writtenParts);
+        assertEquals(0, countDocuments(new Term("part", "part2")));
+
+        // The source isn't indexed and keeps it's checkpoint, so only the failed part is read again.
+        parser.unreadableParts.clear();
+        parse(source);
+
+        assertEquals(0, parser.skippedFiles);
+        assertEquals(3, parser.writtenParts);
+        assertEquals(3, countDocuments(null));
+
+        parse(source);
+        assertEquals(1, parser.skippedFiles);
+    }
+
+    private File createSource(String fileName, String... parts) throws IOException {
+        File source = sourceFolder.newFile(fileName);
+
+        Files.write(source.toPath(), Arrays.asList(parts), StandardCharsets.UTF_8);
+        return source;
+    }
+
+    /**
+     * Parses the sources like opening the case does, the sources are the case's only sources.
+     */
+    private void parse(File... sources) {
+        Set<String> paths = new HashSet<>();
+
+        for (File source : sources) {
+            paths.add(source.getPath());
+        }
+
+        Case currentCase = Case.builder().name(caseName).sources(paths).build();
+        ParserFactory parserFactory = new ParserFactory();
+
+        parserFactory.getParsers().clear();
+        parserFactory.getParsers().add(parser);
+
+        FileParser fileParser = new FileParser(parserFactory, currentCase, new SilentReporter());
+
+        fileParser.setOnParsingFinished((finishedCase, indexer, progressReporter) -> indexer.close());
+        fileParser.parseFiles(paths);
+    }
+
+    /**
+     * @param term The term to count, null to count all documents.
+     */
+    private int countDocuments(Term term) throws IOException {
+        try (Directory directory = FSDirectory.open(Paths.get(PathUtils.getIndexPath(caseName)));
+             DirectoryReader reader = DirectoryReader.open(directory)) {
+            return term == null ? reader.numDocs() : reader.docFreq(term);
+        }
+    }
+
+    static void deleteRecursively(File file) throws IOException {
+        File[] children = file.listFiles();
+
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        Files.deleteIfExists(file.toPath());
+    }
+
+    /**
+     * Indexes every line of a file as a part, committed parts are skipped like the PSTParser skips committed folders.
+     */
+    private static class PartParser implements Parser {
+
+        private int writtenParts;
+        private int skippedFiles;
+
+        /**
+         * Stops without finishing the source after this amount of parts, -1 to finish it.
+         */
+        private int failAfterParts = -1;
+
+        /**
+         * Parts which fail to be read, the source is finished without them like the PSTParser does.
+         */
+        private final Set<String> unreadableParts = new HashSet<>();
+
+        @Override
+        public String getName() {
+            return "PartParser";
+        }
+
+        @Override
+        public Set<String> getSupportedFileExtensions() {
+            return Collections.singleton("part");
+        }
+
+        @Override
+        public TreeItem<TreeObject> parseFile(File file, ParserConfiguration configuration, int totalFiles) {
+            try {
+                if (configuration.getManifest().isIndexed(file)) {
+                    skippedFiles++;
+                    return null;
+                }
+
+                String caseName = configuration.getCurrentCase().getName();
+                Checkpoint checkpoint = Checkpoint.load(caseName, configuration.getSourceID(), configuration.getIndexer());
+                int written = 0;
+                int failures = 0;
+
+                for (String part : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                    if (checkpoint.isDone(part)) {
+                        continue;
+                    }
+                    if (failAfterParts != -1 && written == failAfterParts) {
+                        return null; // Interrupted, the source stays unfinished.
+                    }
+                    if (unreadableParts.contains(part)) {
+                        failures++;
+                        continue;
+                    }
+
+                    Document document = new Document();
+                    document.add(new StringField("id", file.getName() + "/" + part, Field.Store.YES));
+                    document.add(new StringField("source_id", configuration.getSourceID(), Field.Store.YES));
+                    document.add(new StringField("part", part, Field.Store.YES));
+
+                    configuration.getIndexer().getIndexWriter().addDocument(document);
+                    checkpoint.setFinished(part);
+                    checkpoint.commit();
+
+                    written++;
+                    writtenParts++;
+                }
+
+                if (failures == 0) {
+                    configuration.getManifest().setIndexed(file);
+                }
+                return null;
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            } finally {
+                configuration.getFinishedListener().handle(new ActionEvent());
+            }
+        }
+    }
+
+    private static class SilentReporter implements ProgressReporter {
+
+        private final List<TreeItem<TreeObject>> createdTreeItems = new ArrayList<>();
+
+        @Override
+        public void setStatus(String message) {
+        }
+
+        @Override
+        public void addTask(ParserTask<TreeItem<TreeObject>> task) {
+            task.run();
+        }
+
+        @Override
+        public List<TreeItem<TreeObject>> getCreatedTreeItems() {
+            return createdTreeItems;
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+}
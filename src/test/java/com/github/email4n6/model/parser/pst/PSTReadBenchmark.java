@@ -0,0 +1,144 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.model.parser.pst;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.pff.PSTAttachment;
+import com.pff.PSTException;
+import com.pff.PSTFile;
+import com.pff.PSTFolder;
+import com.pff.PSTMessage;
+import com.pff.PSTObject;
+
+/**
+ * Compares the PST read modes by reading every message of the bundled sample,
+ * which is copied a number of times to get a larger synthetic data set.
+ * <p>
+ * Usage: PSTReadBenchmark [copies] [rounds] [block size in KB] [cached blocks]
+ *
+ * @author Marten4n6
+ */
+public class PSTReadBenchmark {
+
+    private static final String SAMPLE = "/samples/DFRWS2009-Outlook-Email.pst";
+
+    public static void main(String[] args) throws Exception {
+        int copies = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int blockSize = (args.length > 2 ? Integer.parseInt(args[2]) : 64) * 1024;
+        int cacheBlocks = args.length > 3 ? Integer.parseInt(args[3]) : 256;
+
+        Path directory = Files.createTempDirectory("email4n6-benchmark");
+        List<File> files = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < copies; i++) {
+                Path copy = directory.resolve("sample-" + i + ".pst");
+
+                try (InputStream inputStream = PSTReadBenchmark.class.getResourceAsStream(SAMPLE)) {
+                    Files.copy(inputStream, copy, StandardCopyOption.REPLACE_EXISTING);
+                }
+                files.add(copy.toFile());
+            }
+
+            long totalBytes = files.stream().mapToLong(File::length).sum();
+            System.out.printf("%d copies, %.1f MB, %d round(s) per mode.%n", copies, totalBytes / 1048576d, rounds);
+
+            for (int round = 0; round <= rounds; round++) {
+                for (PSTFileOpener.ReadMode mode : PSTFileOpener.ReadMode.values()) {
+                    long start = System.nanoTime();
+                    long messages = 0;
+
+                    for (File file : files) {
+                        PSTFile pstFile = PSTFileOpener.open(file, mode, blockSize, cacheBlocks);
+
+                        try {
+                            messages += readFolder(pstFile.getRootFolder());
+                        } finally {
+                            pstFile.close();
+                        }
+                    }
+
+                    double seconds = (System.nanoTime() - start) / 1e9;
+
+                    if (round == 0) {
+                        continue; // Warm-up
+                    }
+
+                    System.out.printf("round %d %-14s %8d messages %8.3f s %8.1f MB/s%n",
+                            round, mode.getName(), messages, seconds, totalBytes / 1048576d / seconds);
+                }
+            }
+        } finally {
+            for (File file : files) {
+                Files.deleteIfExists(file.toPath());
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * Reads what the indexer reads of every message in the folder and it's subfolders.
+     *
+     * @return The amount of read messages.
+     */
+    private static long readFolder(PSTFolder folder) throws IOException, PSTException {
+        long messages = 0;
+
+        if (folder.getContentCount() > 0) {
+            PSTObject pstObject;
+
+            while ((pstObject = folder.getNextChild()) != null) {
+                if (pstObject instanceof PSTMessage) {
+                    PSTMessage message = (PSTMessage) pstObject;
+
+                    message.getSubject();
+                    message.getRTFBody();
+                    message.getBodyHTML();
+                    message.getTransportMessageHeaders();
+
+                    for (int i = 0; i < message.getNumberOfRecipients(); i++) {
+                        message.getRecipient(i).getSmtpAddress();
+                    }
+
+                    for (int i = 0; i < message.getNumberOfAttachments(); i++) {
+                        PSTAttachment attachment = message.getAttachment(i);
+
+                        attachment.getLongFilename();
+                    }
+                }
+                messages++;
+            }
+        }
+
+        if (folder.getNodeType() != 3) {
+            for (PSTFolder subFolder : folder.getSubFolders()) {
+                messages += readFolder(subFolder);
+            }
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * This file is part of Email4n6.
+ * Copyright (C) 2018  Marten4n6
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.github.email4n6.view.tabs.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexOrDocValuesQuery;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.junit.Test;
+
+/**
+ * Tests the date, size and facet syntax of the search query parser.
+ *
+ * @author Marten4n6
+ */
+public class MessageQueryParserTest {
+
+    @Test
+    public void dateMatchesTheWholeDay() throws ParseException {
+        assertEquals(range("received_time", startOfDay("2009-07-01"), startOfDay("2009-07-02") - 1),
+                parse("received_time:2009-07-01"));
+    }
+
+    @Test
+    public void aliasesSearchTheDateFields() throws ParseException {
+        assertEquals(parse("received_time:2009-07-01"), parse("received:2009-07-01"));
+        assertEquals(parse("submit_time:2009-07-01"), parse("sent:2009-07-01"));
+        assertEquals(parse("start_time:2009-07-01"), parse("start:2009-07-01"));
+        assertEquals(parse("end_time:2009-07-01"), parse("end:2009-07-01"));
+    }
+
+    @Test
+    public void inclusiveEndDateIncludesTheDay() throws ParseException {
+        assertEquals(range("received_time", startOfDay("2009-01-01"), startOfDay("2009-07-01") - 1),
+                parse("received:[2009-01-01 TO 2009-06-30]"));
+    }
+
+    @Test
+    public void exclusiveDatesExcludeTheDay() throws ParseException {
+        assertEquals(range("received_time", startOfDay("2009-01-02"), startOfDay("2009-06-30") - 1),
+                parse("received:{2009-01-01 TO 2009-06-30}"));
+    }
+
+    @Test
+    public void openDateRanges() throws ParseException {
+        assertEquals(range("submit_time", startOfDay("2009-01-01"), Long.MAX_VALUE), parse("sent:[2009-01-01 TO *]"));
+        assertEquals(range("submit_time", Long.MIN_VALUE, startOfDay("2009-01-02") - 1), parse("sent:[* TO 2009-01-01]"));
+    }
+
+    @Test
+    public void dateWithTime() throws ParseException {
+        long time = LocalDateTime.parse("2009-07-01T10:30").atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+        assertEquals(range("received_time", time, time), parse("received:\"2009-07-01T10:30\""));
+        assertEquals(range("received_time", time, time + 1000), parse("received:[\"2009-07-01T10:30\" TO \"2009-07-01T10:30:01\"]"));
+    }
+
+    @Test(expected = ParseException.class)
+    public void invalidDateIsRejected() throws ParseException {
+        parse("received:yesterday");
+    }
+
+    @Test
+    public void sizes() throws ParseException {
+        assertEquals(range("size", 2048, 2048), parse("size:2048"));
+        assertEquals(range("size", 1000000, Long.MAX_VALUE), parse("size:[1000000 TO *]"));
+        assertEquals(range("size", 1001, 1999), parse("size:{1000 TO 2000}"));
+    }
+
+    @Test(expected = ParseException.class)
+    public void invalidSizeIsRejected() throws ParseException {
+        parse("size:big");
+    }
+
+    @Test
+    public void phrasesAreAnalyzed() throws ParseException {
+        assertEquals(new PhraseQuery("searchable_text", "fireworks", "display"), parse("\"Fireworks Display\""));
+        assertEquals(new PhraseQuery("subject", "hello", "world"), parse("subject:\"Hello World\""));
+    }
+
+    @Test
+    public void facetsAreMatchedExactly() throws ParseException {
+        assertEquals(new TermQuery(new Term(FacetCounts.SENDER, "someone@example.com")),
+                parse("facet_sender:\"Someone@Example.com\""));
+    }
+
+    @Test
+    public void drillDownMatchesTheValue() throws ParseException {
+        String[] values = {"someone@example.com", "say \"hi\"", "back\\slash\\", "Inbox (old): a*b?", "x\" OR *:*"};
+
+        for (String value : values) {
+            BooleanQuery query = (BooleanQuery) parse(MessageQueryParser.drillDown("fireworks OR party", FacetCounts.FOLDER, value));
+
+            assertEquals(2, query.clauses().size());
+            assertEquals(BooleanClause.Occur.MUST, query.clauses().get(1).getOccur());
+            assertEquals(new TermQuery(new Term(FacetCounts.FOLDER, value.toLowerCase())), query.clauses().get(1).getQuery());
+        }
+    }
+
+    @Test
+    public void drillDownKeepsTheQueryTogether() throws ParseException {
+        BooleanQuery query = (BooleanQuery) parse(MessageQueryParser.drillDown("fireworks OR party", FacetCounts.TYPE, "email"));
+        Query original = query.clauses().get(0).getQuery();
+
+        assertEquals(BooleanClause.Occur.MUST, query.clauses().get(0).getOccur());
+        assertTrue(original instanceof BooleanQuery);
+        assertEquals(2, ((BooleanQuery) original).clauses().size());
+    }
+
+    private static Query parse(String query) throws ParseException {
+        return new MessageQueryParser().parse(query);
+    }
+
+    private static long startOfDay(String date) {
+        return LocalDate.parse(date).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static Query range(String field, long lower, long upper) {
+        return new IndexOrDocValuesQuery(
+                LongPoint.newRangeQuery(field, lower, upper),
+                NumericDocValuesField.newSlowRangeQuery(field, lower, upper)
+        );
+    }
+}